@@ -0,0 +1,24 @@
+val releaseGroup: String by project
+val releaseArtifact: String by project
+
+plugins {
+    alias(libs.plugins.android.library)
+    alias(libs.plugins.androidx.benchmark)
+}
+
+android {
+    namespace = "$releaseGroup.${releaseArtifact.replace("-", "")}.benchmark"
+    testBuildType = "release"
+    defaultConfig {
+        minSdk = 23
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+    }
+}
+
+dependencies {
+    androidTestImplementation(project(":$releaseArtifact"))
+    androidTestImplementation(libs.material)
+    androidTestImplementation(libs.androidx.test.runner)
+    androidTestImplementation(libs.androidx.test.junit)
+    androidTestImplementation(libs.androidx.benchmark.junit4)
+}
@@ -0,0 +1,94 @@
+package com.google.android.material.appbar;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Build.VERSION_CODES;
+import android.view.ContextThemeWrapper;
+import android.view.View.MeasureSpec;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ScrimRenderNode} through {@link SubtitleCollapsingToolbarLayout}, drawn into a
+ * recording canvas so that render nodes are used.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = VERSION_CODES.Q)
+public class ScrimRenderNodeTest {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 600;
+
+  private SubtitleCollapsingToolbarLayout layout;
+  private ColorDrawable scrim;
+  private RenderNode root;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    layout = new SubtitleCollapsingToolbarLayout(context);
+    layout.setTitleEnabled(false);
+    layout.setScrimRenderNodeEnabled(true);
+    layout.setContentScrim(new ColorDrawable(Color.BLUE));
+    scrim = (ColorDrawable) layout.getContentScrim();
+    layout(HEIGHT);
+    root = new RenderNode("root");
+    root.setPosition(0, 0, WIDTH, HEIGHT);
+  }
+
+  @Test
+  public void alphaChangeIsNotRecorded() {
+    for (int alpha = 15; alpha <= 255; alpha += 16) {
+      layout.setScrimAlpha(alpha);
+      draw();
+    }
+    assertEquals(1, layout.getScrimRecordCount());
+  }
+
+  @Test
+  public void invalidateSelfIsRecorded() {
+    layout.setScrimAlpha(255);
+    draw();
+    scrim.setColor(Color.RED);
+    draw();
+    draw();
+    assertEquals(2, layout.getScrimRecordCount());
+  }
+
+  @Test
+  public void boundsChangeIsRecorded() {
+    layout.setScrimAlpha(255);
+    draw();
+    layout(HEIGHT / 2);
+    draw();
+    draw();
+    assertEquals(2, layout.getScrimRecordCount());
+  }
+
+  private void layout(int height) {
+    layout.measure(
+        MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+    layout.layout(0, 0, WIDTH, height);
+  }
+
+  private void draw() {
+    final RecordingCanvas canvas = root.beginRecording();
+    try {
+      layout.draw(canvas);
+    } finally {
+      root.endRecording();
+    }
+  }
+}
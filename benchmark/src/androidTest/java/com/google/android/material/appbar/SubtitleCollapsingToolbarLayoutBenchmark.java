@@ -0,0 +1,109 @@
+package com.google.android.material.appbar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.GradientDrawable;
+import android.graphics.drawable.LayerDrawable;
+import android.view.ContextThemeWrapper;
+import android.view.View.MeasureSpec;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures drawing a layered content scrim while its alpha animates. Each iteration advances one
+ * frame of a fade sampled at {@link #FRAMES} steps, so the reported time and allocation count are
+ * per frame. {@link #scrim()} and {@link #mutateEveryFrame()} draw the layout's own scrim, with the
+ * current draw path and the former one that mutated the scrim before every alpha update.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SubtitleCollapsingToolbarLayoutBenchmark {
+  private static final int FRAMES = 60;
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 600;
+
+  private static final int[] ALPHAS = new int[FRAMES * 2];
+
+  static {
+    for (int i = 0; i < FRAMES; i++) {
+      ALPHAS[i] = 255 * i / FRAMES;
+      ALPHAS[FRAMES + i] = 255 - 255 * i / FRAMES;
+    }
+  }
+
+  @Rule
+  public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private SubtitleCollapsingToolbarLayout layout;
+  private Drawable scrim;
+  private Canvas canvas;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    layout = new SubtitleCollapsingToolbarLayout(context);
+    layout.setTitleEnabled(false);
+    layout.setContentScrim(createLayeredScrim());
+    layout.measure(
+        MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+    layout.layout(0, 0, WIDTH, HEIGHT);
+    scrim = layout.getContentScrim();
+    canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+  }
+
+  @Test
+  public void layoutScrim() {
+    final BenchmarkState state = benchmarkRule.getState();
+    int i = 0;
+    while (state.keepRunning()) {
+      layout.setScrimAlpha(ALPHAS[i]);
+      layout.draw(canvas);
+      i = i == ALPHAS.length - 1 ? 0 : i + 1;
+    }
+  }
+
+  @Test
+  public void scrim() {
+    final BenchmarkState state = benchmarkRule.getState();
+    int i = 0;
+    while (state.keepRunning()) {
+      scrim.setAlpha(ALPHAS[i]);
+      scrim.draw(canvas);
+      i = i == ALPHAS.length - 1 ? 0 : i + 1;
+    }
+  }
+
+  @Test
+  public void mutateEveryFrame() {
+    final BenchmarkState state = benchmarkRule.getState();
+    int i = 0;
+    while (state.keepRunning()) {
+      scrim.mutate().setAlpha(ALPHAS[i]);
+      scrim.draw(canvas);
+      i = i == ALPHAS.length - 1 ? 0 : i + 1;
+    }
+  }
+
+  private static Drawable createLayeredScrim() {
+    final GradientDrawable gradient =
+        new GradientDrawable(
+            GradientDrawable.Orientation.TOP_BOTTOM, new int[] {0x80000000, Color.TRANSPARENT});
+    final GradientDrawable tint =
+        new GradientDrawable(
+            GradientDrawable.Orientation.LEFT_RIGHT, new int[] {0x403F51B5, 0x40FF4081});
+    return new LayerDrawable(new Drawable[] {new ColorDrawable(0xFF3F51B5), gradient, tint});
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.os.Debug;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that a collapse-and-expand sweep of {@link CollapsingTextHelper2#setExpansionFraction}
+ * allocates nothing once the layouts of both ends are built, counted by the runtime on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CollapsingTextHelper2AllocationTest {
+  private static final int FRAMES = 60;
+
+  private CollapsingTextHelper2 helper;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    final View view = new View(context);
+    view.layout(0, 0, 1080, 600);
+
+    helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(48, 0, 1032, 168);
+    helper.setExpandedBounds(48, 48, 1032, 552);
+    helper.setCollapsedTextSize(60f);
+    helper.setCollapsedTextSize2(42f);
+    helper.setExpandedTextSize(102f);
+    helper.setExpandedTextSize2(60f);
+  }
+
+  @Test
+  public void titleAndSubtitle() {
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    assertSweepAllocatesNothing();
+  }
+
+  @Test
+  public void multiline() {
+    helper.setMaxLines(3);
+    helper.setMaxLines2(2);
+    helper.setText("The quick brown fox jumps over the lazy dog, then the lazy dog jumps back");
+    helper.setText2("Pack my box with five dozen liquor jugs, and then pack another one");
+    assertSweepAllocatesNothing();
+  }
+
+  @SuppressWarnings("deprecation") // The only allocation counter available to apps
+  private void assertSweepAllocatesNothing() {
+    // First round trip builds the layouts of both ends
+    sweep();
+
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    try {
+      sweep();
+    } finally {
+      Debug.stopAllocCounting();
+    }
+    assertEquals(0, Debug.getThreadAllocCount());
+  }
+
+  private void sweep() {
+    for (int i = 0; i <= FRAMES; i++) {
+      helper.setExpansionFraction((float) i / FRAMES);
+    }
+    for (int i = FRAMES; i >= 0; i--) {
+      helper.setExpansionFraction((float) i / FRAMES);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.android.material.animation.AnimationUtils;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures a full collapse-and-expand sweep of {@link CollapsingTextHelper2#setExpansionFraction}
+ * under typical configurations. Each iteration advances one frame of a round trip sampled at
+ * {@link #FRAMES} steps, so the reported time and allocation count are per frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CollapsingTextHelper2Benchmark {
+  private static final int FRAMES = 60;
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 600;
+  private static final int COLLAPSED_HEIGHT = 168;
+  private static final int MARGIN = 48;
+  private static final String TITLE = "Title";
+  private static final String SUBTITLE = "Subtitle";
+  private static final String LONG_TITLE =
+      "The quick brown fox jumps over the lazy dog, then the lazy dog jumps back";
+  private static final String LONG_SUBTITLE =
+      "Pack my box with five dozen liquor jugs, and then pack another one";
+
+  private static final float[] FRACTIONS = new float[FRAMES * 2];
+
+  static {
+    for (int i = 0; i < FRAMES; i++) {
+      FRACTIONS[i] = (float) i / FRAMES;
+      FRACTIONS[FRAMES + i] = 1f - (float) i / FRAMES;
+    }
+  }
+
+  @Rule
+  public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  private CollapsingTextHelper2 helper;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    final View view = new View(context);
+    view.layout(0, 0, WIDTH, HEIGHT);
+
+    helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(MARGIN, 0, WIDTH - MARGIN, COLLAPSED_HEIGHT);
+    helper.setExpandedBounds(MARGIN, MARGIN, WIDTH - MARGIN, HEIGHT - MARGIN);
+    helper.setCollapsedTextSize(60f);
+    helper.setCollapsedTextSize2(42f);
+    helper.setExpandedTextSize(102f);
+    helper.setExpandedTextSize2(60f);
+    helper.setTextSizeInterpolator(AnimationUtils.DECELERATE_INTERPOLATOR);
+  }
+
+  @Test
+  public void titleOnly() {
+    helper.setText(TITLE);
+    sweep();
+  }
+
+  @Test
+  public void titleAndSubtitle() {
+    helper.setText(TITLE);
+    helper.setText2(SUBTITLE);
+    sweep();
+  }
+
+  @Test
+  public void multiline() {
+    helper.setMaxLines(3);
+    helper.setMaxLines2(2);
+    helper.setText(LONG_TITLE);
+    helper.setText2(LONG_SUBTITLE);
+    sweep();
+  }
+
+  @Test
+  public void fadeMode() {
+    helper.setFadeModeEnabled(true);
+    helper.setText(TITLE);
+    helper.setText2(SUBTITLE);
+    sweep();
+  }
+
+  @Test
+  public void scaleMode() {
+    helper.setCollapsedTextAppearance(R.style.TextAppearance_Benchmark_Collapsed);
+    helper.setCollapsedTextAppearance2(R.style.TextAppearance_Benchmark_Collapsed2);
+    helper.setExpandedTextAppearance(R.style.TextAppearance_Benchmark_Expanded);
+    helper.setExpandedTextAppearance2(R.style.TextAppearance_Benchmark_Expanded2);
+    helper.setPositionInterpolator(AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR);
+    helper.setText(TITLE);
+    helper.setText2(SUBTITLE);
+    sweep();
+  }
+
+  private void sweep() {
+    final BenchmarkState state = benchmarkRule.getState();
+    int i = 0;
+    while (state.keepRunning()) {
+      helper.setExpansionFraction(FRACTIONS[i]);
+      i = i == FRACTIONS.length - 1 ? 0 : i + 1;
+    }
+  }
+}
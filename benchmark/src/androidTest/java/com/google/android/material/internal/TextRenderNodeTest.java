@@ -0,0 +1,100 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Build.VERSION_CODES;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link TextRenderNode} through {@link CollapsingTextHelper2}, drawn into a recording
+ * canvas so that render nodes are used.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = VERSION_CODES.Q)
+public class TextRenderNodeTest {
+  private static final int FRAMES = 60;
+
+  private CollapsingTextHelper2 helper;
+  private RenderNode root;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    final View view = new View(context);
+    view.layout(0, 0, 1080, 600);
+
+    helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(48, 0, 1032, 168);
+    helper.setExpandedBounds(48, 48, 1032, 552);
+    helper.setCollapsedTextColor(ColorStateList.valueOf(Color.WHITE));
+    helper.setCollapsedTextColor2(ColorStateList.valueOf(Color.WHITE));
+    helper.setExpandedTextColor(ColorStateList.valueOf(Color.BLACK));
+    helper.setExpandedTextColor2(ColorStateList.valueOf(Color.BLACK));
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    helper.setRenderNodeEnabled(true);
+    helper.setMetricsEnabled(true);
+    root = new RenderNode("root");
+    root.setPosition(0, 0, 1080, 600);
+  }
+
+  @Test
+  public void interpolatedColorIsNotRecorded() {
+    for (int i = 0; i <= FRAMES; i++) {
+      helper.setExpansionFraction((float) i / FRAMES);
+      draw();
+    }
+    // Only the first frame, before the color started changing
+    assertEquals(2, helper.getRenderNodeRecordCount());
+
+    // Settled at the collapsed color, recorded once more and then reused
+    draw();
+    draw();
+    assertEquals(4, helper.getRenderNodeRecordCount());
+  }
+
+  @Test
+  public void layoutChangeIsRecorded() {
+    draw();
+    assertEquals(2, helper.getRenderNodeRecordCount());
+    helper.setText("Another title");
+    draw();
+    assertEquals(3, helper.getRenderNodeRecordCount());
+  }
+
+  @Test
+  public void softwareCanvasIsDrawnDirectly() {
+    final Canvas canvas = new Canvas(Bitmap.createBitmap(1080, 600, Bitmap.Config.ARGB_8888));
+    helper.setExpansionFraction(0.5f);
+    helper.draw(canvas);
+    helper.draw2(canvas);
+    assertEquals(0, helper.getRenderNodeRecordCount());
+  }
+
+  private void draw() {
+    final RecordingCanvas canvas = root.beginRecording();
+    try {
+      helper.draw(canvas);
+      helper.draw2(canvas);
+    } finally {
+      root.endRecording();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.benchmark.test.R;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for texture caching of {@link CollapsingTextHelper2}, which needs real font metrics to
+ * rasterize text.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextureCachingTest {
+  private static final int FRAMES = 10;
+
+  private CollapsingTextHelper2 helper;
+
+  @Before
+  public void setup() {
+    final Context context =
+        new ContextThemeWrapper(
+            InstrumentationRegistry.getInstrumentation().getContext(), R.style.Theme_Benchmark);
+    final View view = new View(context);
+    view.layout(0, 0, 1080, 600);
+
+    helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(48, 0, 1032, 168);
+    helper.setExpandedBounds(48, 48, 1032, 552);
+    helper.setCollapsedTextSize(60f);
+    helper.setCollapsedTextSize2(42f);
+    helper.setExpandedTextSize(102f);
+    helper.setExpandedTextSize2(60f);
+    helper.setCollapsedTextColor(ColorStateList.valueOf(Color.BLACK));
+    helper.setCollapsedTextColor2(ColorStateList.valueOf(Color.BLACK));
+    helper.setExpandedTextColor(ColorStateList.valueOf(Color.BLACK));
+    helper.setExpandedTextColor2(ColorStateList.valueOf(Color.BLACK));
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    helper.setTextureCachingEnabled(true);
+  }
+
+  @Test
+  public void textureReusedAcrossFrames() {
+    helper.setExpansionFraction(1f / FRAMES);
+    final List<Bitmap> textures = draw();
+    assertEquals(2, textures.size());
+    for (int i = 2; i < FRAMES; i++) {
+      helper.setExpansionFraction((float) i / FRAMES);
+      final List<Bitmap> frameTextures = draw();
+      assertEquals(2, frameTextures.size());
+      assertSame(textures.get(0), frameTextures.get(0));
+      assertSame(textures.get(1), frameTextures.get(1));
+    }
+
+    // Text is drawn normally at rest
+    helper.setExpansionFraction(1f);
+    assertTrue(draw().isEmpty());
+  }
+
+  @Test
+  public void textureSkippedWhenColorsDiffer() {
+    helper.setExpandedTextColor(ColorStateList.valueOf(Color.WHITE));
+    for (int i = 1; i < FRAMES; i++) {
+      helper.setExpansionFraction((float) i / FRAMES);
+      // Only the subtitle, whose color does not change, is drawn from a texture
+      assertEquals(1, draw().size());
+    }
+  }
+
+  /** Draws title and subtitle, returning the bitmaps drawn. */
+  private List<Bitmap> draw() {
+    final List<Bitmap> textures = new ArrayList<>();
+    final Canvas canvas =
+        new Canvas(Bitmap.createBitmap(1080, 600, Bitmap.Config.ARGB_8888)) {
+          @Override
+          public void drawBitmap(
+              @NonNull Bitmap bitmap, float left, float top, @Nullable Paint paint) {
+            textures.add(bitmap);
+          }
+        };
+    helper.draw(canvas);
+    helper.draw2(canvas);
+    return textures;
+  }
+}
@@ -23,6 +23,7 @@ val jreVersion = JavaLanguageVersion.of(libs.versions.jre.get())
 plugins {
     alias(libs.plugins.android.application) apply false
     alias(libs.plugins.android.library) apply false
+    alias(libs.plugins.androidx.benchmark) apply false
     alias(libs.plugins.maven.publish) apply false
 }
 
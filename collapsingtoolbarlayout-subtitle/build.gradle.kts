@@ -31,6 +31,7 @@ dependencies {
     checkstyle(libs.rulebook.checkstyle)
 
     implementation(libs.material)
+    implementation(libs.androidx.tracing)
 
     testImplementation(libs.bundles.androidx.test)
 }
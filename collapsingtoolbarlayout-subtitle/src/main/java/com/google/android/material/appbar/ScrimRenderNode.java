@@ -0,0 +1,74 @@
+package com.google.android.material.appbar;
+
+import android.graphics.Canvas;
+import android.graphics.RecordingCanvas;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.graphics.drawable.Drawable;
+import android.os.Build.VERSION_CODES;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Display list of a scrim drawable. The drawable is recorded once at full opacity and re-recorded
+ * only when it invalidates itself or its bounds change, while alpha and vertical translation are
+ * applied as render node properties so that fading or moving the scrim does not redraw it.
+ */
+@RequiresApi(VERSION_CODES.Q)
+final class ScrimRenderNode {
+  @NonNull private final RenderNode node;
+  @NonNull private final Rect recordedBounds = new Rect();
+  private boolean dirty = true;
+  private int recordCount;
+
+  ScrimRenderNode(@NonNull String name) {
+    node = new RenderNode(name);
+  }
+
+  /**
+   * Draws the drawable with given alpha and vertical translation, re-recording it only if it was
+   * invalidated or its bounds changed since the last recording. Callers have to ignore
+   * invalidations that the drawable issues while it is being recorded.
+   */
+  void draw(@NonNull Canvas canvas, @NonNull Drawable drawable, int alpha, float translationY) {
+    if (dirty || !node.hasDisplayList() || !recordedBounds.equals(drawable.getBounds())) {
+      record(drawable, alpha);
+    }
+    node.setAlpha(alpha / 255f);
+    node.setTranslationY(translationY);
+    canvas.drawRenderNode(node);
+  }
+
+  /** Marks the recording stale, to be re-recorded on the next draw. */
+  void invalidate() {
+    dirty = true;
+  }
+
+  void discard() {
+    node.discardDisplayList();
+    dirty = true;
+  }
+
+  /** Returns the number of times the drawable was recorded. */
+  int getRecordCount() {
+    return recordCount;
+  }
+
+  private void record(@NonNull Drawable drawable, int alpha) {
+    final Rect bounds = drawable.getBounds();
+    recordedBounds.set(bounds);
+    node.setPosition(bounds);
+    final RecordingCanvas canvas = node.beginRecording();
+    try {
+      // Bounds are relative to the node position
+      canvas.translate(-bounds.left, -bounds.top);
+      drawable.setAlpha(255);
+      drawable.draw(canvas);
+      drawable.setAlpha(alpha);
+    } finally {
+      node.endRecording();
+    }
+    dirty = false;
+    recordCount++;
+  }
+}
@@ -32,10 +32,12 @@ import androidx.annotation.StyleRes;
 import androidx.core.content.ContextCompat;
 import androidx.core.graphics.drawable.DrawableCompat;
 import androidx.core.math.MathUtils;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.core.util.ObjectsCompat;
 import androidx.core.view.GravityCompat;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.tracing.Trace;
 import com.google.android.material.animation.AnimationUtils;
 import com.google.android.material.elevation.ElevationOverlayProvider;
 import com.google.android.material.internal.CollapsingTextHelper2;
@@ -43,6 +45,7 @@ import com.google.android.material.internal.DescendantOffsetUtils;
 import com.google.android.material.internal.ThemeEnforcement;
 import com.google.android.material.resources.MaterialResources;
 import com.hanggrian.collapsingtoolbarlayoutsubtitle.R;
+import java.util.Arrays;
 
 import static com.google.android.material.theme.overlay.MaterialThemeOverlay.wrap;
 
@@ -58,6 +61,22 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
   private static final int DEF_STYLE_RES = R.style.Widget_Design_SubtitleCollapsingToolbar;
   private static final int DEFAULT_SCRIM_ANIMATION_DURATION = 600;
 
+  // Text appearances loaded before the ones of the layout style overlay them
+  private static final int DEFAULT_EXPANDED_TITLE_TEXT_APPEARANCE =
+      R.style.TextAppearance_Design_SubtitleCollapsingToolbar_ExpandedTitle;
+  private static final int DEFAULT_EXPANDED_SUBTITLE_TEXT_APPEARANCE =
+      R.style.TextAppearance_Design_SubtitleCollapsingToolbar_ExpandedSubtitle;
+  private static final int DEFAULT_COLLAPSED_TITLE_TEXT_APPEARANCE =
+      androidx.appcompat.R.style.TextAppearance_AppCompat_Widget_ActionBar_Title;
+  private static final int DEFAULT_COLLAPSED_SUBTITLE_TEXT_APPEARANCE =
+      androidx.appcompat.R.style.TextAppearance_AppCompat_Widget_ActionBar_Subtitle;
+
+  private static final String TRACE_MEASURE = "SubtitleCollapsingToolbarLayout.onMeasure";
+  private static final String TRACE_LAYOUT = "SubtitleCollapsingToolbarLayout.onLayout";
+  private static final String TRACE_DRAW = "SubtitleCollapsingToolbarLayout.draw";
+  private static final String TRACE_OFFSET_CHANGED =
+      "SubtitleCollapsingToolbarLayout.onOffsetChanged";
+
   private boolean refreshToolbar = true;
   private int toolbarId;
   @Nullable private ViewGroup toolbar;
@@ -82,10 +101,27 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
   private ValueAnimator scrimAnimator;
   private long scrimAnimationDuration;
   private int scrimVisibleHeightTrigger = -1;
+  private boolean scrimRenderNodeEnabled;
+  private boolean scrimScrollLinkedEnabled;
+  @Nullable private ScrimRenderNode contentScrimNode, statusBarScrimNode;
+  // Whether a scrim is being recorded, its invalidations are then caused by the recording itself
+  private boolean recordingScrim;
 
   private AppBarLayout.OnOffsetChangedListener onOffsetChangedListener;
 
   int currentOffset;
+  // Whether a layout happened since the last offset change, which then has to be applied again
+  private boolean offsetLayoutChanged = true;
+  // Offset helpers of all children, collected during layout into an array kept across layouts
+  @NonNull private ViewOffsetHelper[] childOffsetHelpers = new ViewOffsetHelper[0];
+  // Pinned and parallax children, the only ones moved by offset changes, indexed during layout
+  // into arrays that are kept across layouts. Indexed again when their layout params change
+  @NonNull private ViewOffsetHelper[] offsetHelpers = new ViewOffsetHelper[0];
+  @NonNull private int[] offsetCollapseModes = new int[0];
+  @NonNull private float[] offsetParallaxMults = new float[0];
+  @NonNull private int[] offsetMaxPinOffsets = new int[0];
+  private int offsetChildCount;
+  private boolean offsetChildrenInvalid = true;
 
   @CollapsingToolbarLayout.TitleCollapseMode private int titleCollapseMode;
 
@@ -96,6 +132,9 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
   private int titleExtraMultilineHeight = 0, subtitleExtraMultilineHeight = 0;
   private boolean titleExtraMultilineHeightEnabled, subtitleExtraMultilineHeightEnabled;
 
+  @Nullable private OnFrameMetricsListener onFrameMetricsListener;
+  @Nullable private OffsetFrameMetrics frameMetrics;
+
   public SubtitleCollapsingToolbarLayout(@NonNull Context context) {
     this(context, null);
   }
@@ -167,14 +206,10 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
     setSubtitle(a.getText(R.styleable.SubtitleCollapsingToolbarLayout_subtitle));
 
     // First load the default text appearances
-    collapsingTextHelper.setExpandedTextAppearance(
-        R.style.TextAppearance_Design_SubtitleCollapsingToolbar_ExpandedTitle);
-    collapsingTextHelper.setExpandedTextAppearance2(
-        R.style.TextAppearance_Design_SubtitleCollapsingToolbar_ExpandedSubtitle);
-    collapsingTextHelper.setCollapsedTextAppearance(
-        androidx.appcompat.R.style.TextAppearance_AppCompat_Widget_ActionBar_Title);
-    collapsingTextHelper.setCollapsedTextAppearance2(
-        androidx.appcompat.R.style.TextAppearance_AppCompat_Widget_ActionBar_Subtitle);
+    collapsingTextHelper.setExpandedTextAppearance(DEFAULT_EXPANDED_TITLE_TEXT_APPEARANCE);
+    collapsingTextHelper.setExpandedTextAppearance2(DEFAULT_EXPANDED_SUBTITLE_TEXT_APPEARANCE);
+    collapsingTextHelper.setCollapsedTextAppearance(DEFAULT_COLLAPSED_TITLE_TEXT_APPEARANCE);
+    collapsingTextHelper.setCollapsedTextAppearance2(DEFAULT_COLLAPSED_SUBTITLE_TEXT_APPEARANCE);
 
     // Now overlay any custom text appearances
     if (a.hasValue(R.styleable.SubtitleCollapsingToolbarLayout_expandedTitleTextAppearance)) {
@@ -337,47 +372,94 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
 
   @Override
   public void draw(@NonNull Canvas canvas) {
-    super.draw(canvas);
+    Trace.beginSection(TRACE_DRAW);
+    try {
+      super.draw(canvas);
+
+      // If we don't have a toolbar, the scrim will be not be drawn in drawChild() below.
+      // Instead, we draw it here, before our collapsing text.
+      ensureToolbar();
+      if (toolbar == null && contentScrim != null && scrimAlpha > 0) {
+        if (frameMetrics != null) {
+          frameMetrics.beginSection();
+        }
+        drawContentScrim(canvas, contentScrim);
+        if (frameMetrics != null) {
+          frameMetrics.drawScrimNanos += frameMetrics.endSection();
+        }
+      }
 
-    // If we don't have a toolbar, the scrim will be not be drawn in drawChild() below.
-    // Instead, we draw it here, before our collapsing text.
-    ensureToolbar();
-    if (toolbar == null && contentScrim != null && scrimAlpha > 0) {
-      contentScrim.mutate().setAlpha(scrimAlpha);
-      contentScrim.draw(canvas);
-    }
+      // Let the collapsing text helper draw its text
+      if (collapsingTitleEnabled && drawCollapsingTitle) {
+        if (frameMetrics != null) {
+          frameMetrics.beginSection();
+        }
+        if (toolbar != null
+            && contentScrim != null
+            && scrimAlpha > 0
+            && isTitleCollapseFadeMode()
+            && collapsingTextHelper.getExpansionFraction()
+                < collapsingTextHelper.getFadeModeThresholdFraction()) {
+          // Mask the expanded text with the contentScrim
+          int save = canvas.save();
+          canvas.clipRect(contentScrim.getBounds(), Op.DIFFERENCE);
+          collapsingTextHelper.draw(canvas);
+          collapsingTextHelper.draw2(canvas);
+          canvas.restoreToCount(save);
+        } else {
+          collapsingTextHelper.draw(canvas);
+          collapsingTextHelper.draw2(canvas);
+        }
+        if (frameMetrics != null) {
+          frameMetrics.drawTextNanos += frameMetrics.endSection();
+        }
+      }
 
-    // Let the collapsing text helper draw its text
-    if (collapsingTitleEnabled && drawCollapsingTitle) {
-      if (toolbar != null
-          && contentScrim != null
-          && scrimAlpha > 0
-          && isTitleCollapseFadeMode()
-          && collapsingTextHelper.getExpansionFraction()
-              < collapsingTextHelper.getFadeModeThresholdFraction()) {
-        // Mask the expanded text with the contentScrim
-        int save = canvas.save();
-        canvas.clipRect(contentScrim.getBounds(), Op.DIFFERENCE);
-        collapsingTextHelper.draw(canvas);
-        collapsingTextHelper.draw2(canvas);
-        canvas.restoreToCount(save);
-      } else {
-        collapsingTextHelper.draw(canvas);
-        collapsingTextHelper.draw2(canvas);
+      // Now draw the status bar scrim
+      if (statusBarScrim != null && scrimAlpha > 0) {
+        final int topInset = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
+        if (topInset > 0) {
+          if (frameMetrics != null) {
+            frameMetrics.beginSection();
+          }
+          if (shouldDrawScrimRenderNode(canvas)) {
+            // Recorded once at the top, the offset is applied as node translation
+            statusBarScrim.setBounds(0, 0, getWidth(), topInset);
+            if (statusBarScrimNode == null) {
+              statusBarScrimNode =
+                  new ScrimRenderNode("SubtitleCollapsingToolbarLayout.statusBarScrim");
+            }
+            drawScrimRenderNode(canvas, statusBarScrim, statusBarScrimNode, -currentOffset);
+          } else {
+            statusBarScrim.setBounds(0, -currentOffset, getWidth(), topInset - currentOffset);
+            statusBarScrim.setAlpha(scrimAlpha);
+            statusBarScrim.draw(canvas);
+          }
+          if (frameMetrics != null) {
+            frameMetrics.drawScrimNanos += frameMetrics.endSection();
+          }
+        }
       }
-    }
 
-    // Now draw the status bar scrim
-    if (statusBarScrim != null && scrimAlpha > 0) {
-      final int topInset = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
-      if (topInset > 0) {
-        statusBarScrim.setBounds(0, -currentOffset, getWidth(), topInset - currentOffset);
-        statusBarScrim.mutate().setAlpha(scrimAlpha);
-        statusBarScrim.draw(canvas);
+      if (onFrameMetricsListener != null && frameMetrics != null) {
+        dispatchFrameMetrics(onFrameMetricsListener, frameMetrics);
       }
+    } finally {
+      Trace.endSection();
     }
   }
 
+  private void dispatchFrameMetrics(
+      @NonNull OnFrameMetricsListener listener, @NonNull OffsetFrameMetrics metrics) {
+    metrics.calculateOffsetsNanos = collapsingTextHelper.getCalculateOffsetsNanos();
+    metrics.calculateBaseOffsetsNanos = collapsingTextHelper.getCalculateBaseOffsetsNanos();
+    metrics.staticLayoutNanos = collapsingTextHelper.getStaticLayoutNanos();
+    metrics.staticLayoutCount = collapsingTextHelper.getStaticLayoutCount();
+    listener.onFrameMetrics(this, metrics);
+    metrics.reset();
+    collapsingTextHelper.resetMetrics();
+  }
+
   @Override
   protected void onConfigurationChanged(@NonNull Configuration newConfig) {
     super.onConfigurationChanged(newConfig);
@@ -392,14 +474,77 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
     // drawChild() call, and draw our scrim just before the Toolbar is drawn
     boolean invalidated = false;
     if (contentScrim != null && scrimAlpha > 0 && isToolbarChild(child)) {
+      if (frameMetrics != null) {
+        frameMetrics.beginSection();
+      }
       updateContentScrimBounds(contentScrim, child, getWidth(), getHeight());
-      contentScrim.mutate().setAlpha(scrimAlpha);
-      contentScrim.draw(canvas);
+      drawContentScrim(canvas, contentScrim);
+      if (frameMetrics != null) {
+        frameMetrics.drawScrimNanos += frameMetrics.endSection();
+      }
       invalidated = true;
     }
     return super.drawChild(canvas, child, drawingTime) || invalidated;
   }
 
+  private void drawContentScrim(@NonNull Canvas canvas, @NonNull Drawable contentScrim) {
+    if (shouldDrawScrimRenderNode(canvas)) {
+      if (contentScrimNode == null) {
+        contentScrimNode = new ScrimRenderNode("SubtitleCollapsingToolbarLayout.contentScrim");
+      }
+      drawScrimRenderNode(canvas, contentScrim, contentScrimNode, 0);
+    } else {
+      contentScrim.setAlpha(scrimAlpha);
+      contentScrim.draw(canvas);
+    }
+  }
+
+  private boolean shouldDrawScrimRenderNode(@NonNull Canvas canvas) {
+    return scrimRenderNodeEnabled
+        && VERSION.SDK_INT >= VERSION_CODES.Q
+        && canvas.isHardwareAccelerated();
+  }
+
+  @RequiresApi(VERSION_CODES.Q)
+  private void drawScrimRenderNode(
+      @NonNull Canvas canvas,
+      @NonNull Drawable scrim,
+      @NonNull ScrimRenderNode node,
+      float translationY) {
+    recordingScrim = true;
+    try {
+      node.draw(canvas, scrim, scrimAlpha, translationY);
+    } finally {
+      recordingScrim = false;
+    }
+  }
+
+  private void invalidateScrimRenderNodes() {
+    if (VERSION.SDK_INT >= VERSION_CODES.Q) {
+      if (contentScrimNode != null) {
+        contentScrimNode.invalidate();
+      }
+      if (statusBarScrimNode != null) {
+        statusBarScrimNode.invalidate();
+      }
+    }
+  }
+
+  @Override
+  public void invalidateDrawable(@NonNull Drawable drawable) {
+    if (recordingScrim) {
+      return;
+    }
+    if (VERSION.SDK_INT >= VERSION_CODES.Q) {
+      if (drawable == contentScrim && contentScrimNode != null) {
+        contentScrimNode.invalidate();
+      } else if (drawable == statusBarScrim && statusBarScrimNode != null) {
+        statusBarScrimNode.invalidate();
+      }
+    }
+    super.invalidateDrawable(drawable);
+  }
+
   @Override
   protected void onSizeChanged(int w, int h, int oldw, int oldh) {
     super.onSizeChanged(w, h, oldw, oldh);
@@ -513,100 +658,175 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
 
   @Override
   protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    ensureToolbar();
-    super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    Trace.beginSection(TRACE_MEASURE);
+    try {
+      ensureToolbar();
 
-    final int mode = MeasureSpec.getMode(heightMeasureSpec);
-    final int topInset = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
-    if ((mode == MeasureSpec.UNSPECIFIED || forceApplySystemWindowInsetTop) && topInset > 0) {
-      // If we have a top inset and we're set to wrap_content height or force apply,
-      // we need to make sure we add the top inset to our height, therefore we re-measure
-      topInsetApplied = topInset;
-      int newHeight = getMeasuredHeight() + topInset;
-      heightMeasureSpec = MeasureSpec.makeMeasureSpec(newHeight, MeasureSpec.EXACTLY);
-      super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-    }
+      final int mode = MeasureSpec.getMode(heightMeasureSpec);
+      final int topInset = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
 
-    if (titleExtraMultilineHeightEnabled && collapsingTextHelper.getMaxLines() > 1) {
-      // Need to update title and bounds in order to calculate line count and text height.
-      updateTitleFromToolbarIfNeeded();
-      updateTextBounds(0, 0, getMeasuredWidth(), getMeasuredHeight(), /* forceRecalculate= */ true);
-
-      int lineCount = collapsingTextHelper.getExpandedLineCount();
-      if (lineCount > 1) {
-        // Add extra height based on the amount of height beyond the first line of title text.
-        int expandedTextHeight = Math.round(collapsingTextHelper.getExpandedTextFullHeight());
-        titleExtraMultilineHeight = expandedTextHeight * (lineCount - 1);
-        int newHeight = getMeasuredHeight() + titleExtraMultilineHeight;
-        heightMeasureSpec = MeasureSpec.makeMeasureSpec(newHeight, MeasureSpec.EXACTLY);
+      // Children are measured at most twice: once for the base height if it is not known ahead,
+      // and once more with every extra height added up
+      final int width;
+      final int baseHeight;
+      final boolean measured;
+      if (mode == MeasureSpec.EXACTLY
+          && MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY) {
+        width = MeasureSpec.getSize(widthMeasureSpec);
+        baseHeight = MeasureSpec.getSize(heightMeasureSpec);
+        measured = false;
+      } else {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        width = getMeasuredWidth();
+        baseHeight = getMeasuredHeight();
+        measured = true;
       }
-    }
-    if (subtitleExtraMultilineHeightEnabled && collapsingTextHelper.getMaxLines2() > 1) {
-      // Need to update title and bounds in order to calculate line count and text height.
-      updateSubtitleFromToolbarIfNeeded();
-      updateTextBounds(0, 0, getMeasuredWidth(), getMeasuredHeight(), /* forceRecalculate= */ true);
-
-      int lineCount = collapsingTextHelper.getExpandedLineCount2();
-      if (lineCount > 1) {
-        // Add extra height based on the amount of height beyond the first line of title text.
-        int expandedTextHeight = Math.round(collapsingTextHelper.getExpandedTextFullHeight2());
-        subtitleExtraMultilineHeight = expandedTextHeight * (lineCount - 1);
-        int newHeight = getMeasuredHeight() + subtitleExtraMultilineHeight;
+      int newHeight = baseHeight;
+
+      if ((mode == MeasureSpec.UNSPECIFIED || forceApplySystemWindowInsetTop) && topInset > 0) {
+        // If we have a top inset and we're set to wrap_content height or force apply,
+        // we need to make sure we add the top inset to our height
+        topInsetApplied = topInset;
+        newHeight += topInset;
+      }
+
+      // Only the expanded text layouts are needed for line counts, offsets are calculated once in
+      // onLayout, where those layouts are reused
+      final int expandedWidth = width - expandedMarginStart - expandedMarginEnd;
+      if (collapsingTitleEnabled
+          && titleExtraMultilineHeightEnabled
+          && collapsingTextHelper.getMaxLines() > 1) {
+        // Need to update title in order to calculate line count and text height.
+        updateTitleFromToolbarIfNeeded();
+
+        int lineCount = collapsingTextHelper.calculateExpandedLineCount(expandedWidth);
+        if (lineCount > 1) {
+          // Add extra height based on the amount of height beyond the first line of title text.
+          int expandedTextHeight = Math.round(collapsingTextHelper.getExpandedTextFullHeight());
+          titleExtraMultilineHeight = expandedTextHeight * (lineCount - 1);
+          newHeight += titleExtraMultilineHeight;
+        }
+      }
+      if (collapsingTitleEnabled
+          && subtitleExtraMultilineHeightEnabled
+          && collapsingTextHelper.getMaxLines2() > 1) {
+        // Need to update subtitle in order to calculate line count and text height.
+        updateSubtitleFromToolbarIfNeeded();
+
+        int lineCount = collapsingTextHelper.calculateExpandedLineCount2(expandedWidth);
+        if (lineCount > 1) {
+          // Add extra height based on the amount of height beyond the first line of title text.
+          int expandedTextHeight = Math.round(collapsingTextHelper.getExpandedTextFullHeight2());
+          subtitleExtraMultilineHeight = expandedTextHeight * (lineCount - 1);
+          newHeight += subtitleExtraMultilineHeight;
+        }
+      }
+
+      if (newHeight != baseHeight) {
         heightMeasureSpec = MeasureSpec.makeMeasureSpec(newHeight, MeasureSpec.EXACTLY);
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+      } else if (!measured) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
       }
-    }
 
-    // Set our minimum height to enable proper AppBarLayout collapsing
-    if (toolbar != null) {
-      if (toolbarDirectChild == null || toolbarDirectChild == this) {
-        setMinimumHeight(getHeightWithMargins(toolbar));
-      } else {
-        setMinimumHeight(getHeightWithMargins(toolbarDirectChild));
+      // Set our minimum height to enable proper AppBarLayout collapsing
+      if (toolbar != null) {
+        if (toolbarDirectChild == null || toolbarDirectChild == this) {
+          setMinimumHeight(getHeightWithMargins(toolbar));
+        } else {
+          setMinimumHeight(getHeightWithMargins(toolbarDirectChild));
+        }
       }
+    } finally {
+      Trace.endSection();
     }
   }
 
   @Override
   protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-    super.onLayout(changed, left, top, right, bottom);
-
-    if (lastInsets != null) {
-      // Shift down any views which are not set to fit system windows
-      final int insetTop = lastInsets.getSystemWindowInsetTop();
-      for (int i = 0, z = getChildCount(); i < z; i++) {
-        final View child = getChildAt(i);
-        if (!ViewCompat.getFitsSystemWindows(child)) {
-          if (child.getTop() < insetTop) {
-            // If the child isn't set to fit system windows but is drawing within
-            // the inset offset it down
-            ViewCompat.offsetTopAndBottom(child, insetTop);
+    Trace.beginSection(TRACE_LAYOUT);
+    try {
+      super.onLayout(changed, left, top, right, bottom);
+
+      if (lastInsets != null) {
+        // Shift down any views which are not set to fit system windows
+        final int insetTop = lastInsets.getSystemWindowInsetTop();
+        for (int i = 0, z = getChildCount(); i < z; i++) {
+          final View child = getChildAt(i);
+          if (!ViewCompat.getFitsSystemWindows(child)) {
+            if (child.getTop() < insetTop) {
+              // If the child isn't set to fit system windows but is drawing within
+              // the inset offset it down
+              ViewCompat.offsetTopAndBottom(child, insetTop);
+            }
           }
         }
       }
-    }
 
-    // Update our child view offset helpers so that they track the correct layout coordinates
-    for (int i = 0, z = getChildCount(); i < z; i++) {
-      getViewOffsetHelper(getChildAt(i)).onViewLayout();
-    }
+      // Update our child view offset helpers so that they track the correct layout coordinates
+      final int childCount = getChildCount();
+      if (childOffsetHelpers.length < childCount) {
+        childOffsetHelpers = new ViewOffsetHelper[childCount];
+      }
+      for (int i = 0; i < childCount; i++) {
+        childOffsetHelpers[i] = getViewOffsetHelper(getChildAt(i));
+        childOffsetHelpers[i].onViewLayout();
+      }
+      indexOffsetChildren();
+      offsetLayoutChanged = true;
 
-    updateTextBounds(left, top, right, bottom, /* forceRecalculate= */ false);
+      updateTextBounds(left, top, right, bottom);
 
-    updateTitleFromToolbarIfNeeded();
-    updateSubtitleFromToolbarIfNeeded();
+      updateTitleFromToolbarIfNeeded();
+      updateSubtitleFromToolbarIfNeeded();
 
-    updateScrimVisibility();
+      updateScrimVisibility();
 
-    // Apply any view offsets, this should be done at the very end of layout
-    for (int i = 0, z = getChildCount(); i < z; i++) {
-      getViewOffsetHelper(getChildAt(i)).applyOffsets();
+      // Apply any view offsets, this should be done at the very end of layout
+      for (int i = 0; i < childCount; i++) {
+        childOffsetHelpers[i].applyOffsets();
+      }
+      // Release helpers of children removed since a previous layout
+      Arrays.fill(childOffsetHelpers, childCount, childOffsetHelpers.length, null);
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  private void indexOffsetChildren() {
+    final int childCount = getChildCount();
+    if (offsetHelpers.length < childCount) {
+      offsetHelpers = new ViewOffsetHelper[childCount];
+      offsetCollapseModes = new int[childCount];
+      offsetParallaxMults = new float[childCount];
+      offsetMaxPinOffsets = new int[childCount];
+    }
+    int count = 0;
+    for (int i = 0; i < childCount; i++) {
+      final View child = getChildAt(i);
+      final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+      lp.parent = this;
+      if (lp.collapseMode != LayoutParams.COLLAPSE_MODE_OFF) {
+        offsetHelpers[count] = getViewOffsetHelper(child);
+        offsetCollapseModes[count] = lp.collapseMode;
+        offsetParallaxMults[count] = lp.parallaxMult;
+        offsetMaxPinOffsets[count] =
+            lp.collapseMode == LayoutParams.COLLAPSE_MODE_PIN ? getMaxOffsetForPinChild(child) : 0;
+        count++;
+      }
     }
+    // Release helpers of children indexed by a previous layout
+    Arrays.fill(offsetHelpers, count, Math.max(count, offsetChildCount), null);
+    offsetChildCount = count;
+    offsetChildrenInvalid = false;
+  }
+
+  /** Called when the collapse mode or parallax multiplier of a child has changed. */
+  void invalidateOffsetChildren() {
+    offsetChildrenInvalid = true;
   }
 
-  private void updateTextBounds(
-      int left, int top, int right, int bottom, boolean forceRecalculate) {
+  private void updateTextBounds(int left, int top, int right, int bottom) {
     // Update the collapsed bounds by getting its transformed bounds
     if (collapsingTitleEnabled && dummyView != null) {
       // We only draw the title if the dummy view is being displayed (Toolbar removes
@@ -614,7 +834,7 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
       drawCollapsingTitle =
           ViewCompat.isAttachedToWindow(dummyView) && dummyView.getVisibility() == VISIBLE;
 
-      if (drawCollapsingTitle || forceRecalculate) {
+      if (drawCollapsingTitle) {
         final boolean isRtl =
             ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
 
@@ -629,7 +849,7 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
             bottom - top - expandedMarginBottom);
 
         // Now recalculate using the new bounds
-        collapsingTextHelper.recalculate(forceRecalculate);
+        collapsingTextHelper.recalculateIfNeeded();
       }
     }
   }
@@ -748,6 +968,77 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
     updateContentDescriptionFromTitle();
   }
 
+  /**
+   * Sets the title whose line breaks were measured off the main thread with {@link
+   * PrecomputedTextCompat#create(CharSequence, PrecomputedTextCompat.Params)}, using {@link
+   * #getTitleTextMetricsParams(CharSequence)}. Layout of the expanded title reuses that measurement
+   * when the parameters still match. The collapsed title is laid out at another text size and
+   * measured again. Experimental Feature.
+   *
+   * @see #setTitle(CharSequence)
+   */
+  public void setPrecomputedTitle(@Nullable PrecomputedTextCompat title) {
+    collapsingTextHelper.setPrecomputedText(title);
+    updateContentDescriptionFromTitle();
+  }
+
+  /**
+   * Sets the subtitle whose line breaks were measured off the main thread with {@link
+   * PrecomputedTextCompat#create(CharSequence, PrecomputedTextCompat.Params)}, using {@link
+   * #getSubtitleTextMetricsParams(CharSequence)}. Layout of the expanded subtitle reuses that
+   * measurement when the parameters still match. The collapsed subtitle is laid out at another text
+   * size and measured again. Experimental Feature.
+   *
+   * @see #setSubtitle(CharSequence)
+   */
+  public void setPrecomputedSubtitle(@Nullable PrecomputedTextCompat subtitle) {
+    collapsingTextHelper.setPrecomputedText2(subtitle);
+    updateContentDescriptionFromTitle();
+  }
+
+  /**
+   * Returns the parameters to precompute title with, matching the expanded title appearance, max
+   * lines and hyphenation frequency at the time of calling. Text direction is that of this view,
+   * which only matches when RTL text direction heuristics are disabled. Experimental Feature.
+   *
+   * @see #getTitleTextMetricsParams(CharSequence)
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTitleTextMetricsParams() {
+    return collapsingTextHelper.getTextMetricsParams();
+  }
+
+  /**
+   * Returns the parameters to precompute given title with, also resolving its text direction the
+   * same way the title layout does. Experimental Feature.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTitleTextMetricsParams(@NonNull CharSequence title) {
+    return collapsingTextHelper.getTextMetricsParams(title);
+  }
+
+  /**
+   * Returns the parameters to precompute subtitle with, matching the expanded subtitle appearance,
+   * max lines and hyphenation frequency at the time of calling. Text direction is that of this
+   * view, which only matches when RTL text direction heuristics are disabled. Experimental Feature.
+   *
+   * @see #getSubtitleTextMetricsParams(CharSequence)
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getSubtitleTextMetricsParams() {
+    return collapsingTextHelper.getTextMetricsParams2();
+  }
+
+  /**
+   * Returns the parameters to precompute given subtitle with, also resolving its text direction
+   * the same way the subtitle layout does. Experimental Feature.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getSubtitleTextMetricsParams(
+      @NonNull CharSequence subtitle) {
+    return collapsingTextHelper.getTextMetricsParams2(subtitle);
+  }
+
   /**
    * Returns the title currently being displayed by this view. If the title is not enabled, then
    * this will return {@code null}.
@@ -840,7 +1131,8 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
 
   /**
    * Set whether the content scrim and/or status bar scrim should be shown or not. Any change in the
-   * vertical scroll may overwrite this value.
+   * vertical scroll may overwrite this value. The change is never animated while scrim alpha is
+   * linked to scroll, as the next offset change sets alpha anyway.
    *
    * @param shown whether the scrims should be shown.
    * @param animate whether to animate the visibility change.
@@ -849,7 +1141,7 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
    */
   public void setScrimsShown(boolean shown, boolean animate) {
     if (scrimsAreShown != shown) {
-      if (animate) {
+      if (animate && !scrimScrollLinkedEnabled) {
         animateScrim(shown ? 0xFF : 0x0);
       } else {
         setScrimAlpha(shown ? 0xFF : 0x0);
@@ -909,12 +1201,14 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
       if (contentScrim != null) {
         contentScrim.setCallback(null);
       }
+      // Mutated once here, drawing only updates alpha and bounds of the own copy
       contentScrim = drawable != null ? drawable.mutate() : null;
       if (contentScrim != null) {
         updateContentScrimBounds(contentScrim, getWidth(), getHeight());
         contentScrim.setCallback(this);
         contentScrim.setAlpha(scrimAlpha);
       }
+      invalidateScrimRenderNodes();
       ViewCompat.postInvalidateOnAnimation(this);
     }
   }
@@ -973,6 +1267,7 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
         statusBarScrim.setCallback(this);
         statusBarScrim.setAlpha(scrimAlpha);
       }
+      invalidateScrimRenderNodes();
       ViewCompat.postInvalidateOnAnimation(this);
     }
   }
@@ -997,6 +1292,7 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
     }
 
     if (changed) {
+      invalidateScrimRenderNodes();
       invalidate();
     }
   }
@@ -1601,6 +1897,218 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
     return collapsingTextHelper.getPositionInterpolator();
   }
 
+  /**
+   * Sets whether single-line title and subtitle should be cached as bitmaps of their expanded
+   * state, which are then scaled during the collapse instead of rasterizing glyphs on every frame.
+   * Text is drawn normally at rest, and whenever its color, letter spacing or shadow differ between
+   * collapsed and expanded states, as a scaled bitmap would freeze them. Experimental Feature.
+   */
+  public void setTextureCachingEnabled(boolean textureCachingEnabled) {
+    collapsingTextHelper.setTextureCachingEnabled(textureCachingEnabled);
+  }
+
+  /**
+   * Gets whether single-line title and subtitle are cached as bitmaps while scaling. Experimental
+   * Feature.
+   */
+  public boolean isTextureCachingEnabled() {
+    return collapsingTextHelper.isTextureCachingEnabled();
+  }
+
+  /**
+   * Sets whether single-line title and subtitle should be recorded into display lists on API 29+
+   * with hardware acceleration. Collapsing then only updates translation, scale and alpha of the
+   * recorded text, which is re-recorded when the text layout or paint changes. Ignored on earlier
+   * API levels. Experimental Feature.
+   */
+  public void setTextRenderNodeEnabled(boolean textRenderNodeEnabled) {
+    collapsingTextHelper.setRenderNodeEnabled(textRenderNodeEnabled);
+  }
+
+  /**
+   * Gets whether single-line title and subtitle are recorded into display lists. Experimental
+   * Feature.
+   */
+  public boolean isTextRenderNodeEnabled() {
+    return collapsingTextHelper.isRenderNodeEnabled();
+  }
+
+  /**
+   * Sets whether content and status bar scrims should be recorded into display lists on API 29+
+   * with hardware acceleration. Showing, hiding and scrolling scrims then only updates alpha and
+   * translation of the recorded drawables, which are re-recorded when they invalidate themselves
+   * or their bounds change. Ignored on earlier API levels. Experimental Feature.
+   */
+  public void setScrimRenderNodeEnabled(boolean scrimRenderNodeEnabled) {
+    if (this.scrimRenderNodeEnabled != scrimRenderNodeEnabled) {
+      this.scrimRenderNodeEnabled = scrimRenderNodeEnabled;
+      if (!scrimRenderNodeEnabled && VERSION.SDK_INT >= VERSION_CODES.Q) {
+        if (contentScrimNode != null) {
+          contentScrimNode.discard();
+        }
+        if (statusBarScrimNode != null) {
+          statusBarScrimNode.discard();
+        }
+      }
+      ViewCompat.postInvalidateOnAnimation(this);
+    }
+  }
+
+  /** Gets whether scrims are recorded into display lists. Experimental Feature. */
+  public boolean isScrimRenderNodeEnabled() {
+    return scrimRenderNodeEnabled;
+  }
+
+  /** Returns the number of times content and status bar scrims were recorded. */
+  int getScrimRecordCount() {
+    if (VERSION.SDK_INT < VERSION_CODES.Q) {
+      return 0;
+    }
+    return (contentScrimNode != null ? contentScrimNode.getRecordCount() : 0)
+        + (statusBarScrimNode != null ? statusBarScrimNode.getRecordCount() : 0);
+  }
+
+  /**
+   * Sets whether scrim alpha should follow the scroll offset, fading in from the scrim visible
+   * height trigger down to the collapsed height, instead of being animated once the trigger is
+   * crossed. Nothing is drawn once scrolling stops. Experimental Feature.
+   *
+   * @see #getScrimVisibleHeightTrigger()
+   */
+  public void setScrimScrollLinkedEnabled(boolean scrimScrollLinkedEnabled) {
+    if (this.scrimScrollLinkedEnabled != scrimScrollLinkedEnabled) {
+      this.scrimScrollLinkedEnabled = scrimScrollLinkedEnabled;
+      if (scrimScrollLinkedEnabled) {
+        updateScrimVisibility();
+      } else {
+        setScrimAlpha(scrimsAreShown ? 0xFF : 0x0);
+      }
+    }
+  }
+
+  /** Gets whether scrim alpha follows the scroll offset. Experimental Feature. */
+  public boolean isScrimScrollLinkedEnabled() {
+    return scrimScrollLinkedEnabled;
+  }
+
+  /**
+   * Sets whether the title position and text size interpolators should be sampled into lookup
+   * tables once, instead of being evaluated on every frame. Useful with path-based interpolators
+   * that are expensive to evaluate. Experimental Feature.
+   */
+  public void setInterpolationTablesEnabled(boolean interpolationTablesEnabled) {
+    collapsingTextHelper.setInterpolationTablesEnabled(interpolationTablesEnabled);
+  }
+
+  /**
+   * Gets whether the title position and text size interpolators are sampled into lookup tables.
+   * Experimental Feature.
+   */
+  public boolean isInterpolationTablesEnabled() {
+    return collapsingTextHelper.isInterpolationTablesEnabled();
+  }
+
+  /**
+   * Sets whether the subtitle should be drawn with tabular numbers, digits of equal width. Setting
+   * a subtitle that only differs in digits, like a ticking timer or price, then updates the current
+   * text layouts in place instead of building new ones. Experimental Feature.
+   */
+  public void setSubtitleTabularNumbersEnabled(boolean tabularNumbersEnabled) {
+    collapsingTextHelper.setTabularNumbersEnabled2(tabularNumbersEnabled);
+  }
+
+  /** Gets whether the subtitle is drawn with tabular numbers. Experimental Feature. */
+  public boolean isSubtitleTabularNumbersEnabled() {
+    return collapsingTextHelper.isTabularNumbersEnabled2();
+  }
+
+  /**
+   * Loads the fonts of title and subtitle text appearances of this layout's default style, so that
+   * layouts created later do not relayout once the fonts arrive. Meant to be called during app
+   * startup or idle time. Experimental Feature.
+   *
+   * <p>Pass the themed context that layouts will be inflated with, usually the activity. Resolved
+   * text appearances are only shared by contexts of that theme and configuration, while fonts
+   * loaded from any context are kept for the whole process.
+   *
+   * @see #warmUp(Context, int...)
+   */
+  public static void warmUp(@NonNull Context context) {
+    context = wrap(context, null, R.attr.subtitleCollapsingToolbarLayoutStyle, DEF_STYLE_RES);
+    final TypedArray a =
+        context.obtainStyledAttributes(
+            null,
+            R.styleable.SubtitleCollapsingToolbarLayout,
+            R.attr.subtitleCollapsingToolbarLayoutStyle,
+            DEF_STYLE_RES);
+    warmUp(
+        context,
+        DEFAULT_EXPANDED_TITLE_TEXT_APPEARANCE,
+        DEFAULT_EXPANDED_SUBTITLE_TEXT_APPEARANCE,
+        DEFAULT_COLLAPSED_TITLE_TEXT_APPEARANCE,
+        DEFAULT_COLLAPSED_SUBTITLE_TEXT_APPEARANCE,
+        a.getResourceId(R.styleable.SubtitleCollapsingToolbarLayout_expandedTitleTextAppearance, 0),
+        a.getResourceId(
+            R.styleable.SubtitleCollapsingToolbarLayout_expandedSubtitleTextAppearance, 0),
+        a.getResourceId(
+            R.styleable.SubtitleCollapsingToolbarLayout_collapsedTitleTextAppearance, 0),
+        a.getResourceId(
+            R.styleable.SubtitleCollapsingToolbarLayout_collapsedSubtitleTextAppearance, 0));
+    a.recycle();
+  }
+
+  /**
+   * Loads the fonts of given text appearances, so that layouts created later find them ready. Use
+   * for styles applied with {@link #setExpandedTitleTextAppearance(int)} and similar, passing the
+   * same context as {@link #warmUp(Context)}. Experimental Feature.
+   */
+  public static void warmUp(@NonNull Context context, @StyleRes int... resIds) {
+    for (int resId : resIds) {
+      if (resId != 0) {
+        CollapsingTextHelper2.warmUpTextAppearance(context, resId);
+      }
+    }
+  }
+
+  /**
+   * Begins a batch edit, in which title and subtitle properties can be set without recalculating
+   * the text after each of them. Must be balanced with {@link #endBatchEdit()}, batch edits may be
+   * nested. Experimental Feature.
+   */
+  public void beginBatchEdit() {
+    collapsingTextHelper.beginBatchEdit();
+  }
+
+  /**
+   * Ends a batch edit, recalculating the text once if any property has changed since the outermost
+   * {@link #beginBatchEdit()}. Experimental Feature.
+   *
+   * @throws IllegalStateException if there is no batch edit to end.
+   */
+  public void endBatchEdit() {
+    collapsingTextHelper.endBatchEdit();
+  }
+
+  /** Returns whether a batch edit is in progress. Experimental Feature. */
+  public boolean isInBatchEdit() {
+    return collapsingTextHelper.isInBatchEdit();
+  }
+
+  /**
+   * Sets a listener to receive timings of this layout's work, reported once per drawn frame. Work
+   * happening between two frames, such as offset changes and text layout, is attributed to the
+   * next one. Pass null to stop measuring. Experimental Feature.
+   */
+  public void setOnFrameMetricsListener(@Nullable OnFrameMetricsListener listener) {
+    onFrameMetricsListener = listener;
+    if (listener == null) {
+      frameMetrics = null;
+    } else if (frameMetrics == null) {
+      frameMetrics = new OffsetFrameMetrics();
+    }
+    collapsingTextHelper.setMetricsEnabled(listener != null);
+  }
+
   /**
    * Set the duration used for scrim visibility animations.
    *
@@ -1636,6 +2144,9 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
   }
 
   public static class LayoutParams extends CollapsingToolbarLayout.LayoutParams {
+    // Layout that last indexed this child, to be told about collapse mode changes
+    @Nullable SubtitleCollapsingToolbarLayout parent;
+
     public LayoutParams(Context c, AttributeSet attrs) {
       super(c, attrs);
     }
@@ -1661,15 +2172,149 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
       // The copy constructor called here only exists on API 19+.
       super(source);
     }
+
+    @Override
+    public void setCollapseMode(int collapseMode) {
+      super.setCollapseMode(collapseMode);
+      if (parent != null) {
+        parent.invalidateOffsetChildren();
+      }
+    }
+
+    @Override
+    public void setParallaxMultiplier(float multiplier) {
+      super.setParallaxMultiplier(multiplier);
+      if (parent != null) {
+        parent.invalidateOffsetChildren();
+      }
+    }
+  }
+
+  /**
+   * Callback for timings of the work done by {@link SubtitleCollapsingToolbarLayout} in a frame.
+   *
+   * @see #setOnFrameMetricsListener(OnFrameMetricsListener)
+   */
+  public interface OnFrameMetricsListener {
+    /**
+     * Called after the layout has drawn a frame. The metrics instance is reused for the next frame
+     * and must not be kept.
+     */
+    void onFrameMetrics(
+        @NonNull SubtitleCollapsingToolbarLayout layout, @NonNull OffsetFrameMetrics metrics);
+  }
+
+  /**
+   * Timings of a single frame of {@link SubtitleCollapsingToolbarLayout}, in nanoseconds, named
+   * apart from {@link android.view.FrameMetrics} which reports the whole window. Phases of the
+   * collapsing text helper are nested, offset calculation and base offsets include the text
+   * layouts they build, and offset changes include offset calculation.
+   */
+  public static final class OffsetFrameMetrics {
+    long offsetChangedNanos;
+    long calculateOffsetsNanos;
+    long calculateBaseOffsetsNanos;
+    long staticLayoutNanos;
+    long drawTextNanos;
+    long drawScrimNanos;
+    int staticLayoutCount;
+
+    private long sectionStartNanos;
+
+    OffsetFrameMetrics() {}
+
+    /** Returns the time spent applying AppBarLayout offset changes to children, scrims and text. */
+    public long getOffsetChangedNanos() {
+      return offsetChangedNanos;
+    }
+
+    /** Returns the time spent calculating title and subtitle position, size and color. */
+    public long getCalculateOffsetsNanos() {
+      return calculateOffsetsNanos;
+    }
+
+    /** Returns the time spent calculating collapsed and expanded title and subtitle bounds. */
+    public long getCalculateBaseOffsetsNanos() {
+      return calculateBaseOffsetsNanos;
+    }
+
+    /** Returns the time spent building title and subtitle text layouts. */
+    public long getStaticLayoutNanos() {
+      return staticLayoutNanos;
+    }
+
+    /** Returns the time spent drawing title and subtitle. */
+    public long getDrawTextNanos() {
+      return drawTextNanos;
+    }
+
+    /** Returns the time spent drawing content and status bar scrims. */
+    public long getDrawScrimNanos() {
+      return drawScrimNanos;
+    }
+
+    /** Returns the number of text layouts built, excluding those reused from cache. */
+    public int getStaticLayoutCount() {
+      return staticLayoutCount;
+    }
+
+    /**
+     * Returns -1 as allocations are not counted, the only counters available to apps being the
+     * deprecated process-wide ones of {@link android.os.Debug}. Apps that need the number can
+     * count allocations themselves around their frames.
+     */
+    public int getAllocationCount() {
+      return -1;
+    }
+
+    void beginSection() {
+      sectionStartNanos = System.nanoTime();
+    }
+
+    /** Returns the time elapsed since {@link #beginSection()}. */
+    long endSection() {
+      return System.nanoTime() - sectionStartNanos;
+    }
+
+    void reset() {
+      offsetChangedNanos = 0;
+      calculateOffsetsNanos = 0;
+      calculateBaseOffsetsNanos = 0;
+      staticLayoutNanos = 0;
+      drawTextNanos = 0;
+      drawScrimNanos = 0;
+      staticLayoutCount = 0;
+    }
   }
 
   /** Show or hide the scrims if needed. */
   final void updateScrimVisibility() {
     if (contentScrim != null || statusBarScrim != null) {
-      setScrimsShown(getHeight() + currentOffset < getScrimVisibleHeightTrigger());
+      if (scrimScrollLinkedEnabled) {
+        updateScrollLinkedScrimAlpha();
+      } else {
+        setScrimsShown(getHeight() + currentOffset < getScrimVisibleHeightTrigger());
+      }
     }
   }
 
+  private void updateScrollLinkedScrimAlpha() {
+    final int visibleHeight = getHeight() + currentOffset;
+    final int trigger = getScrimVisibleHeightTrigger();
+    final int insetTop = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
+    // Fade in from the trigger down to the collapsed height, or switch at once if there is no room
+    final int range = trigger - ViewCompat.getMinimumHeight(this) - insetTop;
+    final float fraction =
+        range > 0
+            ? MathUtils.clamp((trigger - visibleHeight) / (float) range, 0f, 1f)
+            : visibleHeight < trigger ? 1f : 0f;
+    if (scrimAnimator != null && scrimAnimator.isRunning()) {
+      scrimAnimator.cancel();
+    }
+    scrimsAreShown = visibleHeight < trigger;
+    setScrimAlpha(Math.round(fraction * 0xFF));
+  }
+
   final int getMaxOffsetForPinChild(@NonNull View child) {
     final ViewOffsetHelper offsetHelper = getViewOffsetHelper(child);
     final LayoutParams lp = (LayoutParams) child.getLayoutParams();
@@ -1686,44 +2331,63 @@ public class SubtitleCollapsingToolbarLayout extends FrameLayout {
 
     @Override
     public void onOffsetChanged(AppBarLayout layout, int verticalOffset) {
-      currentOffset = verticalOffset;
-
-      final int insetTop = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
+      // Relayouts of AppBarLayout dispatch the same offset again, which changes nothing
+      if (verticalOffset == currentOffset
+          && !offsetLayoutChanged
+          && !offsetChildrenInvalid
+          && !isLayoutRequested()) {
+        return;
+      }
+      Trace.beginSection(TRACE_OFFSET_CHANGED);
+      try {
+        if (frameMetrics != null) {
+          frameMetrics.beginSection();
+        }
+        currentOffset = verticalOffset;
+        offsetLayoutChanged = false;
+        if (offsetChildrenInvalid) {
+          indexOffsetChildren();
+        }
 
-      for (int i = 0, z = getChildCount(); i < z; i++) {
-        final View child = getChildAt(i);
-        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
-        final ViewOffsetHelper offsetHelper = getViewOffsetHelper(child);
-
-        switch (lp.collapseMode) {
-          case LayoutParams.COLLAPSE_MODE_PIN:
-            offsetHelper.setTopAndBottomOffset(
-                MathUtils.clamp(-verticalOffset, 0, getMaxOffsetForPinChild(child)));
-            break;
-          case LayoutParams.COLLAPSE_MODE_PARALLAX:
-            offsetHelper.setTopAndBottomOffset(Math.round(-verticalOffset * lp.parallaxMult));
-            break;
-          default:
-            break;
+        final int insetTop = lastInsets != null ? lastInsets.getSystemWindowInsetTop() : 0;
+
+        for (int i = 0; i < offsetChildCount; i++) {
+          switch (offsetCollapseModes[i]) {
+            case LayoutParams.COLLAPSE_MODE_PIN:
+              offsetHelpers[i].setTopAndBottomOffset(
+                  MathUtils.clamp(-verticalOffset, 0, offsetMaxPinOffsets[i]));
+              break;
+            case LayoutParams.COLLAPSE_MODE_PARALLAX:
+              offsetHelpers[i].setTopAndBottomOffset(
+                  Math.round(-verticalOffset * offsetParallaxMults[i]));
+              break;
+            default:
+              break;
+          }
         }
-      }
 
-      // Show or hide the scrims if needed
-      updateScrimVisibility();
+        // Show or hide the scrims if needed
+        updateScrimVisibility();
 
-      if (statusBarScrim != null && insetTop > 0) {
-        ViewCompat.postInvalidateOnAnimation(SubtitleCollapsingToolbarLayout.this);
-      }
+        if (statusBarScrim != null && insetTop > 0) {
+          ViewCompat.postInvalidateOnAnimation(SubtitleCollapsingToolbarLayout.this);
+        }
 
-      // Update the collapsing text's fraction
-      int height = getHeight();
-      final int expandRange =
-          height - ViewCompat.getMinimumHeight(SubtitleCollapsingToolbarLayout.this) - insetTop;
-      final int scrimRange = height - getScrimVisibleHeightTrigger();
-      collapsingTextHelper.setFadeModeStartFraction(
-          Math.min(1, (float) scrimRange / (float) expandRange));
-      collapsingTextHelper.setCurrentOffsetY(currentOffset + expandRange);
-      collapsingTextHelper.setExpansionFraction(Math.abs(verticalOffset) / (float) expandRange);
+        // Update the collapsing text's fraction
+        int height = getHeight();
+        final int expandRange =
+            height - ViewCompat.getMinimumHeight(SubtitleCollapsingToolbarLayout.this) - insetTop;
+        final int scrimRange = height - getScrimVisibleHeightTrigger();
+        collapsingTextHelper.setFadeModeStartFraction(
+            Math.min(1, (float) scrimRange / (float) expandRange));
+        collapsingTextHelper.setCurrentOffsetY(currentOffset + expandRange);
+        collapsingTextHelper.setExpansionFraction(Math.abs(verticalOffset) / (float) expandRange);
+        if (frameMetrics != null) {
+          frameMetrics.offsetChangedNanos += frameMetrics.endSection();
+        }
+      } finally {
+        Trace.endSection();
+      }
     }
   }
 }
@@ -0,0 +1,78 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Typeface;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.google.android.material.resources.TextAppearance;
+import com.google.android.material.resources.TextAppearanceFontCallback;
+
+/**
+ * Read-only values of a {@link TextAppearance}, shared by every helper using the style. The text
+ * appearance itself is never handed out, its font state is only written once by loading the font
+ * the style names, which is the same for every context resolving it.
+ */
+final class CachedTextAppearance {
+  @NonNull private final TextAppearance textAppearance;
+  @Nullable private final ColorStateList textColor;
+  private final float textSize;
+  @Nullable private final ColorStateList shadowColor;
+  private final float shadowDx;
+  private final float shadowDy;
+  private final float shadowRadius;
+  private final float letterSpacing;
+  @NonNull private final Typeface fallbackFont;
+
+  CachedTextAppearance(@NonNull Context context, int resId) {
+    textAppearance = new TextAppearance(context, resId);
+    textColor = textAppearance.getTextColor();
+    textSize = textAppearance.getTextSize();
+    shadowColor = textAppearance.shadowColor;
+    shadowDx = textAppearance.shadowDx;
+    shadowDy = textAppearance.shadowDy;
+    shadowRadius = textAppearance.shadowRadius;
+    letterSpacing = textAppearance.letterSpacing;
+    fallbackFont = textAppearance.getFallbackFont();
+  }
+
+  @Nullable
+  ColorStateList getTextColor() {
+    return textColor;
+  }
+
+  float getTextSize() {
+    return textSize;
+  }
+
+  @Nullable
+  ColorStateList getShadowColor() {
+    return shadowColor;
+  }
+
+  float getShadowDx() {
+    return shadowDx;
+  }
+
+  float getShadowDy() {
+    return shadowDy;
+  }
+
+  float getShadowRadius() {
+    return shadowRadius;
+  }
+
+  float getLetterSpacing() {
+    return letterSpacing;
+  }
+
+  @NonNull
+  Typeface getFallbackFont() {
+    return fallbackFont;
+  }
+
+  /** Loads the font once for all users, calling back at once if it has already been loaded. */
+  void getFontAsync(@NonNull Context context, @NonNull TextAppearanceFontCallback callback) {
+    textAppearance.getFontAsync(context, callback);
+  }
+}
@@ -1,6 +1,7 @@
 package com.google.android.material.internal;
 
 import android.animation.TimeInterpolator;
+import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
@@ -12,8 +13,12 @@ import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
+import android.text.Layout;
 import android.text.Layout.Alignment;
+import android.text.PrecomputedText;
+import android.text.Spanned;
 import android.text.StaticLayout;
+import android.text.TextDirectionHeuristics;
 import android.text.TextPaint;
 import android.text.TextUtils;
 import android.text.TextUtils.TruncateAt;
@@ -25,16 +30,19 @@ import androidx.annotation.FloatRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.annotation.StyleRes;
 import androidx.core.math.MathUtils;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.core.text.TextDirectionHeuristicsCompat;
 import androidx.core.view.GravityCompat;
 import androidx.core.view.ViewCompat;
+import androidx.tracing.Trace;
 import com.google.android.material.animation.AnimationUtils;
 import com.google.android.material.color.MaterialColors;
 import com.google.android.material.internal.StaticLayoutBuilderCompat.StaticLayoutBuilderCompatException;
 import com.google.android.material.resources.CancelableFontCallback;
 import com.google.android.material.resources.CancelableFontCallback.ApplyFont;
-import com.google.android.material.resources.TextAppearance;
+import com.google.android.material.resources.TextAppearanceFontCallback;
 import com.google.android.material.resources.TypefaceUtils;
 
 import static android.text.Layout.Alignment.ALIGN_CENTER;
@@ -56,7 +64,14 @@ public final class CollapsingTextHelper2 {
   // by using our own texture
   private static final boolean USE_SCALING_TEXTURE = VERSION.SDK_INT < 18;
   private static final String TAG = "CollapsingTextHelper2";
+  private static final String TRACE_RECALCULATE = "CollapsingTextHelper2.recalculate";
+  private static final String TRACE_CREATE_STATIC_LAYOUT =
+      "CollapsingTextHelper2.createStaticLayout";
+  private static final String TRACE_CREATE_STATIC_LAYOUT2 =
+      "CollapsingTextHelper2.createStaticLayout2";
   private static final String ELLIPSIS_NORMAL = "\u2026"; // HORIZONTAL ELLIPSIS (…)
+  private static final String FONT_FEATURE_TABULAR_NUMBERS = "tnum";
+  private static final String DIGITS = "0123456789";
 
   private static final float FADE_MODE_THRESHOLD_FRACTION_RELATIVE = 0.5f;
 
@@ -90,6 +105,7 @@ public final class CollapsingTextHelper2 {
   private ColorStateList expandedTextColor, expandedTextColor2;
   private ColorStateList collapsedTextColor, collapsedTextColor2;
   private int expandedLineCount, expandedLineCount2;
+  private int expandedLayoutHeight, expandedLayoutHeight2;
   private float expandedDrawY, expandedDrawY2;
   private float collapsedDrawY, collapsedDrawY2;
   private float expandedDrawX, expandedDrawX2;
@@ -110,7 +126,21 @@ public final class CollapsingTextHelper2 {
   private boolean isRtl;
   private boolean isRtlTextDirectionHeuristicsEnabled = true;
 
-  private boolean useTexture;
+  private boolean textureCachingEnabled;
+  private boolean renderNodeEnabled;
+  @Nullable private TextRenderNode textRenderNode, textRenderNode2;
+  private boolean tabularNumbersEnabled2;
+  // Subtitle that layouts are built from in tabular numbers mode, patched in place when digits tick
+  @Nullable private DigitText digitText2;
+  // Digit text that the kept subtitle layouts were built from, null if built from other text
+  @Nullable private DigitText layoutDigitText2;
+  @NonNull private final float[] collapsedDigitAdvances2 = new float[DIGITS.length()];
+  @NonNull private final float[] expandedDigitAdvances2 = new float[DIGITS.length()];
+  private boolean digitAdvancesValid2;
+  // Text color before fade mode alpha is applied, and the fade ratio itself
+  private int currentTextColor, currentTextColor2;
+  private float currentFadeAlpha = 1f;
+  private boolean useTexture, useTexture2;
   @Nullable private Bitmap expandedTitleTexture, expandedTitleTexture2;
   private Paint texturePaint, texturePaint2;
 
@@ -121,16 +151,37 @@ public final class CollapsingTextHelper2 {
   private float currentShadowDx, currentShadowDx2;
   private float currentShadowDy, currentShadowDy2;
   private int currentShadowColor, currentShadowColor2;
+  private float appliedShadowRadius, appliedShadowRadius2;
+  private float appliedShadowDx, appliedShadowDx2;
+  private float appliedShadowDy, appliedShadowDy2;
+  private int appliedShadowColor, appliedShadowColor2;
 
   private int[] state;
 
   private boolean boundsChanged;
 
+  // Whether anything affecting base offsets has changed since the last recalculation
+  private boolean recalculateNeeded = true;
+  private int recalculatedLayoutDirection;
+  private int batchEditNesting;
+
+  // Whether anything drawn has changed since the last posted invalidation
+  private boolean drawStateChanged;
+
   @NonNull private final TextPaint textPaint, textPaint2;
   @NonNull private final TextPaint tmpPaint, tmpPaint2;
 
   private TimeInterpolator positionInterpolator;
   private TimeInterpolator textSizeInterpolator;
+  // Evaluated on every frame, sampled copies of above interpolators when tables are enabled
+  private TimeInterpolator framePositionInterpolator;
+  private TimeInterpolator frameTextSizeInterpolator;
+  private boolean interpolationTablesEnabled;
+
+  private boolean metricsEnabled;
+  private long calculateOffsetsNanos, calculateBaseOffsetsNanos, staticLayoutNanos;
+  private int staticLayoutCount;
+  private int renderNodeRecordCount;
 
   private float collapsedShadowRadius, collapsedShadowRadius2;
   private float collapsedShadowDx, collapsedShadowDx2;
@@ -144,10 +195,16 @@ public final class CollapsingTextHelper2 {
   private float expandedLetterSpacing, expandedLetterSpacing2;
   private float currentLetterSpacing, currentLetterSpacing2;
   private StaticLayout textLayout, textLayout2;
+  // Layouts of both ends of the transition are kept so that crossing between them while scrolling
+  // does not rebuild them, they are only dropped when the text metrics change.
+  private StaticLayout collapsedTextLayout, collapsedTextLayout2;
+  private StaticLayout expandedTextLayout, expandedTextLayout2;
+  @NonNull private final StaticLayoutCache textLayoutCache, textLayoutCache2;
   private float collapsedTextWidth, collapsedTextWidth2;
   private float collapsedTextBlend, collapsedTextBlend2;
   private float expandedTextBlend, expandedTextBlend2;
   private CharSequence textToDrawCollapsed, textToDrawCollapsed2;
+  private String crossSectionText, crossSectionText2;
   private int maxLines = 1, maxLines2 = 1;
   private float lineSpacingAdd = StaticLayoutBuilderCompat.DEFAULT_LINE_SPACING_ADD,
       lineSpacingAdd2 = StaticLayoutBuilderCompat.DEFAULT_LINE_SPACING_ADD;
@@ -163,6 +220,8 @@ public final class CollapsingTextHelper2 {
     textPaint2 = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.SUBPIXEL_TEXT_FLAG);
     tmpPaint = new TextPaint(textPaint);
     tmpPaint2 = new TextPaint(textPaint2);
+    textLayoutCache = new StaticLayoutCache();
+    textLayoutCache2 = new StaticLayoutCache();
 
     collapsedBounds = new Rect();
     expandedBounds = new Rect();
@@ -175,11 +234,13 @@ public final class CollapsingTextHelper2 {
 
   public void setTextSizeInterpolator(TimeInterpolator interpolator) {
     textSizeInterpolator = interpolator;
+    frameTextSizeInterpolator = maybeSampleInterpolator(interpolator);
     recalculate();
   }
 
   public void setPositionInterpolator(TimeInterpolator interpolator) {
     positionInterpolator = interpolator;
+    framePositionInterpolator = maybeSampleInterpolator(interpolator);
     recalculate();
   }
 
@@ -188,6 +249,30 @@ public final class CollapsingTextHelper2 {
     return positionInterpolator;
   }
 
+  /**
+   * Sets whether position and text size interpolators should be sampled into lookup tables once,
+   * so that each frame reads from the table instead of evaluating the curve.
+   */
+  public void setInterpolationTablesEnabled(boolean interpolationTablesEnabled) {
+    if (this.interpolationTablesEnabled != interpolationTablesEnabled) {
+      this.interpolationTablesEnabled = interpolationTablesEnabled;
+      framePositionInterpolator = maybeSampleInterpolator(positionInterpolator);
+      frameTextSizeInterpolator = maybeSampleInterpolator(textSizeInterpolator);
+      recalculate();
+    }
+  }
+
+  public boolean isInterpolationTablesEnabled() {
+    return interpolationTablesEnabled;
+  }
+
+  @Nullable
+  private TimeInterpolator maybeSampleInterpolator(@Nullable TimeInterpolator interpolator) {
+    return interpolationTablesEnabled && interpolator != null
+        ? new SampledInterpolator(interpolator)
+        : interpolator;
+  }
+
   public void setExpandedTextSize(float textSize) {
     if (expandedTextSize != textSize) {
       expandedTextSize = textSize;
@@ -262,6 +347,9 @@ public final class CollapsingTextHelper2 {
     if (!rectEquals(expandedBounds, left, top, right, bottom)) {
       expandedBounds.set(left, top, right, bottom);
       boundsChanged = true;
+      recalculateNeeded = true;
+      clearTextLayouts();
+      clearTextLayouts2();
       onBoundsChanged();
     }
   }
@@ -274,6 +362,9 @@ public final class CollapsingTextHelper2 {
     if (!rectEquals(collapsedBounds, left, top, right, bottom)) {
       collapsedBounds.set(left, top, right, bottom);
       boundsChanged = true;
+      recalculateNeeded = true;
+      clearTextLayouts();
+      clearTextLayouts2();
       onBoundsChanged();
     }
   }
@@ -404,8 +495,11 @@ public final class CollapsingTextHelper2 {
   }
 
   public void setFadeModeStartFraction(float fadeModeStartFraction) {
-    this.fadeModeStartFraction = fadeModeStartFraction;
-    fadeModeThresholdFraction = calculateFadeModeThresholdFraction();
+    if (this.fadeModeStartFraction != fadeModeStartFraction) {
+      this.fadeModeStartFraction = fadeModeStartFraction;
+      fadeModeThresholdFraction = calculateFadeModeThresholdFraction();
+      recalculateNeeded = true;
+    }
   }
 
   private float calculateFadeModeThresholdFraction() {
@@ -415,6 +509,7 @@ public final class CollapsingTextHelper2 {
 
   public void setFadeModeEnabled(boolean fadeModeEnabled) {
     this.fadeModeEnabled = fadeModeEnabled;
+    recalculateNeeded = true;
   }
 
   private void getTextPaintExpanded(@NonNull TextPaint textPaint) {
@@ -479,8 +574,26 @@ public final class CollapsingTextHelper2 {
     return collapsedTextGravity;
   }
 
+  /**
+   * Resolves a text appearance into the cache shared by all helpers and starts loading its font,
+   * so that a helper using it later in a context of the same theme finds both ready.
+   */
+  public static void warmUpTextAppearance(@NonNull Context context, @StyleRes int resId) {
+    final CachedTextAppearance textAppearance = TextAppearanceCache.get(context, resId);
+    // The loaded font is kept by the text appearance, nothing else has to be done with it
+    textAppearance.getFontAsync(
+        context,
+        new TextAppearanceFontCallback() {
+          @Override
+          public void onFontRetrieved(Typeface typeface, boolean fontResolvedSynchronously) {}
+
+          @Override
+          public void onFontRetrievalFailed(int reason) {}
+        });
+  }
+
   public void setCollapsedTextAppearance(int resId) {
-    TextAppearance textAppearance = new TextAppearance(view.getContext(), resId);
+    CachedTextAppearance textAppearance = TextAppearanceCache.get(view.getContext(), resId);
 
     if (textAppearance.getTextColor() != null) {
       collapsedTextColor = textAppearance.getTextColor();
@@ -488,13 +601,13 @@ public final class CollapsingTextHelper2 {
     if (textAppearance.getTextSize() != 0) {
       collapsedTextSize = textAppearance.getTextSize();
     }
-    if (textAppearance.shadowColor != null) {
-      collapsedShadowColor = textAppearance.shadowColor;
+    if (textAppearance.getShadowColor() != null) {
+      collapsedShadowColor = textAppearance.getShadowColor();
     }
-    collapsedShadowDx = textAppearance.shadowDx;
-    collapsedShadowDy = textAppearance.shadowDy;
-    collapsedShadowRadius = textAppearance.shadowRadius;
-    collapsedLetterSpacing = textAppearance.letterSpacing;
+    collapsedShadowDx = textAppearance.getShadowDx();
+    collapsedShadowDy = textAppearance.getShadowDy();
+    collapsedShadowRadius = textAppearance.getShadowRadius();
+    collapsedLetterSpacing = textAppearance.getLetterSpacing();
 
     // Cancel pending async fetch, if any, and replace with a new one.
     if (collapsedFontCallback != null) {
@@ -515,7 +628,7 @@ public final class CollapsingTextHelper2 {
   }
 
   public void setCollapsedTextAppearance2(int resId) {
-    TextAppearance textAppearance = new TextAppearance(view.getContext(), resId);
+    CachedTextAppearance textAppearance = TextAppearanceCache.get(view.getContext(), resId);
 
     if (textAppearance.getTextColor() != null) {
       collapsedTextColor2 = textAppearance.getTextColor();
@@ -523,13 +636,13 @@ public final class CollapsingTextHelper2 {
     if (textAppearance.getTextSize() != 0) {
       collapsedTextSize2 = textAppearance.getTextSize();
     }
-    if (textAppearance.shadowColor != null) {
-      collapsedShadowColor2 = textAppearance.shadowColor;
+    if (textAppearance.getShadowColor() != null) {
+      collapsedShadowColor2 = textAppearance.getShadowColor();
     }
-    collapsedShadowDx2 = textAppearance.shadowDx;
-    collapsedShadowDy2 = textAppearance.shadowDy;
-    collapsedShadowRadius2 = textAppearance.shadowRadius;
-    collapsedLetterSpacing2 = textAppearance.letterSpacing;
+    collapsedShadowDx2 = textAppearance.getShadowDx();
+    collapsedShadowDy2 = textAppearance.getShadowDy();
+    collapsedShadowRadius2 = textAppearance.getShadowRadius();
+    collapsedLetterSpacing2 = textAppearance.getLetterSpacing();
 
     // Cancel pending async fetch, if any, and replace with a new one.
     if (collapsedFontCallback2 != null) {
@@ -550,20 +663,20 @@ public final class CollapsingTextHelper2 {
   }
 
   public void setExpandedTextAppearance(int resId) {
-    TextAppearance textAppearance = new TextAppearance(view.getContext(), resId);
+    CachedTextAppearance textAppearance = TextAppearanceCache.get(view.getContext(), resId);
     if (textAppearance.getTextColor() != null) {
       expandedTextColor = textAppearance.getTextColor();
     }
     if (textAppearance.getTextSize() != 0) {
       expandedTextSize = textAppearance.getTextSize();
     }
-    if (textAppearance.shadowColor != null) {
-      expandedShadowColor = textAppearance.shadowColor;
+    if (textAppearance.getShadowColor() != null) {
+      expandedShadowColor = textAppearance.getShadowColor();
     }
-    expandedShadowDx = textAppearance.shadowDx;
-    expandedShadowDy = textAppearance.shadowDy;
-    expandedShadowRadius = textAppearance.shadowRadius;
-    expandedLetterSpacing = textAppearance.letterSpacing;
+    expandedShadowDx = textAppearance.getShadowDx();
+    expandedShadowDy = textAppearance.getShadowDy();
+    expandedShadowRadius = textAppearance.getShadowRadius();
+    expandedLetterSpacing = textAppearance.getLetterSpacing();
 
     // Cancel pending async fetch, if any, and replace with a new one.
     if (expandedFontCallback != null) {
@@ -584,20 +697,20 @@ public final class CollapsingTextHelper2 {
   }
 
   public void setExpandedTextAppearance2(int resId) {
-    TextAppearance textAppearance = new TextAppearance(view.getContext(), resId);
+    CachedTextAppearance textAppearance = TextAppearanceCache.get(view.getContext(), resId);
     if (textAppearance.getTextColor() != null) {
       expandedTextColor2 = textAppearance.getTextColor();
     }
     if (textAppearance.getTextSize() != 0) {
       expandedTextSize2 = textAppearance.getTextSize();
     }
-    if (textAppearance.shadowColor != null) {
-      expandedShadowColor2 = textAppearance.shadowColor;
+    if (textAppearance.getShadowColor() != null) {
+      expandedShadowColor2 = textAppearance.getShadowColor();
     }
-    expandedShadowDx2 = textAppearance.shadowDx;
-    expandedShadowDy2 = textAppearance.shadowDy;
-    expandedShadowRadius2 = textAppearance.shadowRadius;
-    expandedLetterSpacing2 = textAppearance.letterSpacing;
+    expandedShadowDx2 = textAppearance.getShadowDx();
+    expandedShadowDy2 = textAppearance.getShadowDy();
+    expandedShadowRadius2 = textAppearance.getShadowRadius();
+    expandedLetterSpacing2 = textAppearance.getLetterSpacing();
 
     // Cancel pending async fetch, if any, and replace with a new one.
     if (expandedFontCallback2 != null) {
@@ -764,7 +877,7 @@ public final class CollapsingTextHelper2 {
           collapsedTypefaceBold != null ? collapsedTypefaceBold : collapsedTypefaceDefault;
       expandedTypeface =
           expandedTypefaceBold != null ? expandedTypefaceBold : expandedTypefaceDefault;
-      recalculate(/* forceRecalculate= */ true);
+      recalculate();
     }
   }
 
@@ -784,7 +897,7 @@ public final class CollapsingTextHelper2 {
           collapsedTypefaceBold2 != null ? collapsedTypefaceBold2 : collapsedTypefaceDefault2;
       expandedTypeface2 =
           expandedTypefaceBold2 != null ? expandedTypefaceBold2 : expandedTypefaceDefault2;
-      recalculate(/* forceRecalculate= */ true);
+      recalculate();
     }
   }
 
@@ -805,16 +918,32 @@ public final class CollapsingTextHelper2 {
   }
 
   public boolean setState(final int[] state) {
+    final int[] previousState = this.state;
     this.state = state;
 
     if (isStateful()) {
-      recalculate();
+      // Drawable state changes often without resolving to different text colors
+      if (isColorChanged(collapsedTextColor, previousState, state)
+          || isColorChanged(collapsedTextColor2, previousState, state)
+          || isColorChanged(expandedTextColor, previousState, state)
+          || isColorChanged(expandedTextColor2, previousState, state)) {
+        recalculate();
+      }
       return true;
     }
 
     return false;
   }
 
+  private static boolean isColorChanged(
+      @Nullable ColorStateList colorStateList,
+      @Nullable int[] previousState,
+      @Nullable int[] state) {
+    return colorStateList != null
+        && getColorForState(colorStateList, previousState)
+            != getColorForState(colorStateList, state);
+  }
+
   public boolean isStateful() {
     return (collapsedTextColor != null && collapsedTextColor.isStateful())
         || (collapsedTextColor2 != null && collapsedTextColor2.isStateful())
@@ -848,6 +977,7 @@ public final class CollapsingTextHelper2 {
 
   public void setRtlTextDirectionHeuristicsEnabled(boolean rtlTextDirectionHeuristicsEnabled) {
     isRtlTextDirectionHeuristicsEnabled = rtlTextDirectionHeuristicsEnabled;
+    recalculateNeeded = true;
   }
 
   public boolean isRtlTextDirectionHeuristicsEnabled() {
@@ -855,11 +985,35 @@ public final class CollapsingTextHelper2 {
   }
 
   private void calculateCurrentOffsets() {
+    if (batchEditNesting > 0 && recalculateNeeded) {
+      // Base offsets are stale until the batch edit ends, which calculates the current fraction
+      return;
+    }
+    final long startNanos = metricsEnabled ? System.nanoTime() : 0;
     calculateOffsets(expandedFraction);
+    if (metricsEnabled) {
+      calculateOffsetsNanos += System.nanoTime() - startNanos;
+    }
   }
 
   private void calculateOffsets(final float fraction) {
-    interpolateBounds(fraction);
+    // Evaluate each curve once, every property driven by it shares the result
+    final float positionFraction = interpolate(fraction, framePositionInterpolator);
+    final float fastOutSlowInFraction =
+        AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR.getInterpolation(fraction);
+    final float inverseFastOutSlowInFraction =
+        AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR.getInterpolation(1 - fraction);
+
+    final float previousDrawX = currentDrawX;
+    final float previousDrawX2 = currentDrawX2;
+    final float previousDrawY = currentDrawY;
+    final float previousDrawY2 = currentDrawY2;
+    final int previousColor = textPaint.getColor();
+    final int previousColor2 = textPaint2.getColor();
+    final float previousLetterSpacing = textPaint.getLetterSpacing();
+    final float previousLetterSpacing2 = textPaint2.getLetterSpacing();
+
+    interpolateBounds(fraction, positionFraction);
     float textBlendFraction;
     if (fadeModeEnabled) {
       if (fraction < fadeModeThresholdFraction) {
@@ -883,21 +1037,19 @@ public final class CollapsingTextHelper2 {
       }
     } else {
       textBlendFraction = fraction;
-      currentDrawX = lerp(expandedDrawX, collapsedDrawX, fraction, positionInterpolator);
-      currentDrawX2 = lerp(expandedDrawX2, collapsedDrawX2, fraction, positionInterpolator);
-      currentDrawY = lerp(expandedDrawY, collapsedDrawY, fraction, positionInterpolator);
-      currentDrawY2 = lerp(expandedDrawY2, collapsedDrawY2, fraction, positionInterpolator);
+      currentDrawX = AnimationUtils.lerp(expandedDrawX, collapsedDrawX, positionFraction);
+      currentDrawX2 = AnimationUtils.lerp(expandedDrawX2, collapsedDrawX2, positionFraction);
+      currentDrawY = AnimationUtils.lerp(expandedDrawY, collapsedDrawY, positionFraction);
+      currentDrawY2 = AnimationUtils.lerp(expandedDrawY2, collapsedDrawY2, positionFraction);
 
       setInterpolatedTextSize(fraction);
       setInterpolatedTextSize2(fraction);
     }
 
-    setCollapsedTextBlend(
-        1 - lerp(0, 1, 1 - fraction, AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
-    setCollapsedTextBlend2(
-        1 - lerp(0, 1, 1 - fraction, AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
-    setExpandedTextBlend(lerp(1, 0, fraction, AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
-    setExpandedTextBlend2(lerp(1, 0, fraction, AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
+    setCollapsedTextBlend(1 - AnimationUtils.lerp(0, 1, inverseFastOutSlowInFraction));
+    setCollapsedTextBlend2(1 - AnimationUtils.lerp(0, 1, inverseFastOutSlowInFraction));
+    setExpandedTextBlend(AnimationUtils.lerp(1, 0, fastOutSlowInFraction));
+    setExpandedTextBlend2(AnimationUtils.lerp(1, 0, fastOutSlowInFraction));
 
     if (collapsedTextColor != expandedTextColor) {
       // If the collapsed and expanded text colors are different, blend them based on the
@@ -921,11 +1073,8 @@ public final class CollapsingTextHelper2 {
     if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
       if (collapsedLetterSpacing != expandedLetterSpacing) {
         textPaint.setLetterSpacing(
-            lerp(
-                expandedLetterSpacing,
-                collapsedLetterSpacing,
-                fraction,
-                AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
+            AnimationUtils.lerp(
+                expandedLetterSpacing, collapsedLetterSpacing, fastOutSlowInFraction));
       } else {
         textPaint.setLetterSpacing(collapsedLetterSpacing);
       }
@@ -933,11 +1082,8 @@ public final class CollapsingTextHelper2 {
     if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
       if (collapsedLetterSpacing2 != expandedLetterSpacing2) {
         textPaint2.setLetterSpacing(
-            lerp(
-                expandedLetterSpacing2,
-                collapsedLetterSpacing2,
-                fraction,
-                AnimationUtils.FAST_OUT_SLOW_IN_INTERPOLATOR));
+            AnimationUtils.lerp(
+                expandedLetterSpacing2, collapsedLetterSpacing2, fastOutSlowInFraction));
       } else {
         textPaint2.setLetterSpacing(collapsedLetterSpacing2);
       }
@@ -958,24 +1104,88 @@ public final class CollapsingTextHelper2 {
             getCurrentColor(expandedShadowColor2),
             getCurrentColor(collapsedShadowColor2),
             fraction);
-    textPaint.setShadowLayer(
-        currentShadowRadius, currentShadowDx, currentShadowDy, currentShadowColor);
-    textPaint2.setShadowLayer(
-        currentShadowRadius2, currentShadowDx2, currentShadowDy2, currentShadowColor2);
+    setShadowLayer(currentShadowRadius, currentShadowDx, currentShadowDy, currentShadowColor);
+    setShadowLayer2(currentShadowRadius2, currentShadowDx2, currentShadowDy2, currentShadowColor2);
 
+    currentTextColor = textPaint.getColor();
+    currentTextColor2 = textPaint2.getColor();
+    currentFadeAlpha = fadeModeEnabled ? calculateFadeModeTextAlpha(fraction) : 1f;
     if (fadeModeEnabled) {
       int originalAlpha = textPaint.getAlpha();
       int originalAlpha2 = textPaint2.getAlpha();
 
       // Calculates new alpha as a ratio of original alpha based on position.
-      int textAlpha = (int) (calculateFadeModeTextAlpha(fraction) * originalAlpha);
-      int textAlpha2 = (int) (calculateFadeModeTextAlpha(fraction) * originalAlpha2);
+      int textAlpha = (int) (currentFadeAlpha * originalAlpha);
+      int textAlpha2 = (int) (currentFadeAlpha * originalAlpha2);
 
       textPaint.setAlpha(textAlpha);
       textPaint2.setAlpha(textAlpha2);
     }
 
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (currentDrawX != previousDrawX
+        || currentDrawX2 != previousDrawX2
+        || currentDrawY != previousDrawY
+        || currentDrawY2 != previousDrawY2
+        || textPaint.getColor() != previousColor
+        || textPaint2.getColor() != previousColor2
+        || textPaint.getLetterSpacing() != previousLetterSpacing
+        || textPaint2.getLetterSpacing() != previousLetterSpacing2) {
+      drawStateChanged = true;
+    }
+    // Post a single invalidation for this frame, or none if nothing drawn has changed. The whole
+    // view is invalidated, hardware-accelerated windows ignore dirty rectangles anyway
+    if (drawStateChanged) {
+      drawStateChanged = false;
+      ViewCompat.postInvalidateOnAnimation(view);
+    }
+  }
+
+  /**
+   * Sets the shadow layer of title paint, only touching the native paint when any of the values
+   * differs from the last applied shadow.
+   */
+  private void setShadowLayer(float radius, float dx, float dy, @ColorInt int color) {
+    if (radius == 0) {
+      // Paint removes the shadow layer on zero radius, other values are irrelevant
+      dx = 0;
+      dy = 0;
+      color = 0;
+    }
+    if (radius != appliedShadowRadius
+        || dx != appliedShadowDx
+        || dy != appliedShadowDy
+        || color != appliedShadowColor) {
+      appliedShadowRadius = radius;
+      appliedShadowDx = dx;
+      appliedShadowDy = dy;
+      appliedShadowColor = color;
+      textPaint.setShadowLayer(radius, dx, dy, color);
+      drawStateChanged = true;
+    }
+  }
+
+  /**
+   * Sets the shadow layer of subtitle paint, only touching the native paint when any of the values
+   * differs from the last applied shadow.
+   */
+  private void setShadowLayer2(float radius, float dx, float dy, @ColorInt int color) {
+    if (radius == 0) {
+      // Paint removes the shadow layer on zero radius, other values are irrelevant
+      dx = 0;
+      dy = 0;
+      color = 0;
+    }
+    if (radius != appliedShadowRadius2
+        || dx != appliedShadowDx2
+        || dy != appliedShadowDy2
+        || color != appliedShadowColor2) {
+      appliedShadowRadius2 = radius;
+      appliedShadowDx2 = dx;
+      appliedShadowDy2 = dy;
+      appliedShadowColor2 = color;
+      textPaint2.setShadowLayer(radius, dx, dy, color);
+      drawStateChanged = true;
+    }
   }
 
   private float calculateFadeModeTextAlpha(@FloatRange(from = 0.0, to = 1.0) float fraction) {
@@ -1021,6 +1231,11 @@ public final class CollapsingTextHelper2 {
     if (colorStateList == null) {
       return 0;
     }
+    return getColorForState(colorStateList, state);
+  }
+
+  private static int getColorForState(
+      @NonNull ColorStateList colorStateList, @Nullable int[] state) {
     if (state != null) {
       return colorStateList.getColorForState(state, 0);
     }
@@ -1031,34 +1246,15 @@ public final class CollapsingTextHelper2 {
   // - TOP: CLIP TITLE AT TOPMOST, THEN ADJUST THE SUBTITLE BELOW IT.
   // - BOTTOM: CLIP SUBTITLE AT BOTTOMMOST, THEN ADJUST THE SUBTITLE ABOVE IT.
   // - CENTER: CLIP TITLE AT CENTER MINUS DISTANCE, THEN ADJUST THE SUBTITLE BELOW IT.
-  private void calculateBaseOffsets(boolean forceRecalculate) {
+  private void calculateBaseOffsets() {
     final boolean isTitleOnly = TextUtils.isEmpty(text2);
 
     // We then calculate the collapsed text size, using the same logic
-    calculateUsingTextSize(/* fraction= */ 1, forceRecalculate);
-    calculateUsingTextSize2(/* fraction= */ 1, forceRecalculate);
-    if (textToDraw != null && textLayout != null) {
-      textToDrawCollapsed =
-          TextUtils.ellipsize(textToDraw, textPaint, textLayout.getWidth(), TruncateAt.END);
-    }
-    if (textToDraw2 != null && textLayout2 != null) {
-      textToDrawCollapsed2 =
-          TextUtils.ellipsize(textToDraw2, textPaint2, textLayout2.getWidth(), TruncateAt.END);
-    }
-    if (textToDrawCollapsed != null) {
-      collapsedTextWidth = measureTextWidth(textPaint, textToDrawCollapsed);
-    } else {
-      collapsedTextWidth = 0;
-    }
-    if (textToDrawCollapsed2 != null) {
-      collapsedTextWidth2 = measureTextWidth(textPaint2, textToDrawCollapsed2);
-    } else {
-      collapsedTextWidth2 = 0;
-    }
-    final int collapsedAbsGravity =
-        GravityCompat.getAbsoluteGravity(
-            collapsedTextGravity,
-            isRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
+    calculateUsingTextSize(/* fraction= */ 1);
+    calculateUsingTextSize2(/* fraction= */ 1);
+    calculateCollapsedText();
+    calculateCollapsedText2();
+    final int collapsedAbsGravity = getAbsoluteGravity(collapsedTextGravity);
 
     // reusable dimension
     float textOffset = (textPaint.descent() - textPaint.ascent()) / 2;
@@ -1100,45 +1296,21 @@ public final class CollapsingTextHelper2 {
       }
     }
 
-    switch (collapsedAbsGravity & GravityCompat.RELATIVE_HORIZONTAL_GRAVITY_MASK) {
-      case Gravity.CENTER_HORIZONTAL:
-        collapsedDrawX = collapsedBounds.centerX() - (collapsedTextWidth / 2);
-        collapsedDrawX2 = collapsedBounds.centerX() - (collapsedTextWidth2 / 2);
-        break;
-      case Gravity.RIGHT:
-        collapsedDrawX = collapsedBounds.right - collapsedTextWidth;
-        collapsedDrawX2 = collapsedBounds.right - collapsedTextWidth2;
-        break;
-      case Gravity.LEFT:
-      default:
-        collapsedDrawX = collapsedBounds.left;
-        collapsedDrawX2 = collapsedBounds.left;
-        break;
-    }
+    collapsedDrawX = getDrawX(collapsedBounds, collapsedAbsGravity, collapsedTextWidth);
+    collapsedDrawX2 = getDrawX(collapsedBounds, collapsedAbsGravity, collapsedTextWidth2);
 
-    calculateUsingTextSize(/* fraction= */ 0, forceRecalculate);
-    calculateUsingTextSize2(/* fraction= */ 0, forceRecalculate);
+    calculateUsingTextSize(/* fraction= */ 0);
+    calculateUsingTextSize2(/* fraction= */ 0);
     float expandedTextHeight = textLayout != null ? textLayout.getHeight() : 0;
     float expandedTextHeight2 = textLayout2 != null ? textLayout2.getHeight() : 0;
-    float expandedTextWidth = 0;
-    float expandedTextWidth2 = 0;
-    if (textLayout != null && maxLines > 1) {
-      expandedTextWidth = textLayout.getWidth();
-    } else if (textToDraw != null) {
-      expandedTextWidth = measureTextWidth(textPaint, textToDraw);
-    }
-    if (textLayout2 != null && maxLines2 > 1) {
-      expandedTextWidth2 = textLayout2.getWidth();
-    } else if (textToDraw2 != null) {
-      expandedTextWidth2 = measureTextWidth(textPaint2, textToDraw2);
-    }
+    final float expandedTextWidth = calculateExpandedTextWidth();
+    final float expandedTextWidth2 = calculateExpandedTextWidth2();
     expandedLineCount = textLayout != null ? textLayout.getLineCount() : 0;
     expandedLineCount2 = textLayout2 != null ? textLayout2.getLineCount() : 0;
+    expandedLayoutHeight = textLayout != null ? textLayout.getHeight() : 0;
+    expandedLayoutHeight2 = textLayout2 != null ? textLayout2.getHeight() : 0;
 
-    final int expandedAbsGravity =
-        GravityCompat.getAbsoluteGravity(
-            expandedTextGravity,
-            isRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
+    final int expandedAbsGravity = getAbsoluteGravity(expandedTextGravity);
 
     // reload
     textOffset = expandedTextHeight / 2;
@@ -1174,65 +1346,182 @@ public final class CollapsingTextHelper2 {
           break;
       }
     }
-    switch (expandedAbsGravity & GravityCompat.RELATIVE_HORIZONTAL_GRAVITY_MASK) {
-      case Gravity.CENTER_HORIZONTAL:
-        expandedDrawX = expandedBounds.centerX() - (expandedTextWidth / 2);
-        expandedDrawX2 = expandedBounds.centerX() - (expandedTextWidth2 / 2);
-        break;
-      case Gravity.RIGHT:
-        expandedDrawX = expandedBounds.right - expandedTextWidth;
-        expandedDrawX2 = expandedBounds.right - expandedTextWidth2;
-        break;
-      case Gravity.LEFT:
-      default:
-        expandedDrawX = expandedBounds.left;
-        expandedDrawX2 = expandedBounds.left;
-        break;
-    }
+    expandedDrawX = getDrawX(expandedBounds, expandedAbsGravity, expandedTextWidth);
+    expandedDrawX2 = getDrawX(expandedBounds, expandedAbsGravity, expandedTextWidth2);
 
     // The bounds have changed so we need to clear the texture
     clearTexture();
+    clearTexture2();
     // Now reset the text size back to the original
     setInterpolatedTextSize(expandedFraction);
     setInterpolatedTextSize2(expandedFraction);
   }
 
+  /**
+   * Calculates base offsets of the title alone, keeping those of the subtitle. Vertical offsets
+   * are kept too, callers have to check that the expanded line count and height are unchanged.
+   */
+  private void calculateTextBaseOffsets() {
+    // Gravity is resolved with the direction of the last text calculated in a full pass
+    final boolean isRtl = this.isRtl;
+    calculateUsingTextSize(/* fraction= */ 1);
+    calculateCollapsedText();
+    calculateUsingTextSize(/* fraction= */ 0);
+    final float expandedTextWidth = calculateExpandedTextWidth();
+    expandedLineCount = textLayout != null ? textLayout.getLineCount() : 0;
+    expandedLayoutHeight = textLayout != null ? textLayout.getHeight() : 0;
+    this.isRtl = isRtl;
+
+    collapsedDrawX =
+        getDrawX(collapsedBounds, getAbsoluteGravity(collapsedTextGravity), collapsedTextWidth);
+    expandedDrawX =
+        getDrawX(expandedBounds, getAbsoluteGravity(expandedTextGravity), expandedTextWidth);
+
+    clearTexture();
+    setInterpolatedTextSize(expandedFraction);
+  }
+
+  /**
+   * Calculates base offsets of the subtitle alone, keeping those of the title. Vertical offsets
+   * are kept too, callers have to check that the expanded line count and height are unchanged.
+   */
+  private void calculateTextBaseOffsets2() {
+    // Gravity is resolved with the direction of the last text calculated in a full pass
+    final boolean isRtl = this.isRtl;
+    calculateUsingTextSize2(/* fraction= */ 1);
+    calculateCollapsedText2();
+    calculateUsingTextSize2(/* fraction= */ 0);
+    final float expandedTextWidth2 = calculateExpandedTextWidth2();
+    expandedLineCount2 = textLayout2 != null ? textLayout2.getLineCount() : 0;
+    expandedLayoutHeight2 = textLayout2 != null ? textLayout2.getHeight() : 0;
+    this.isRtl = isRtl;
+
+    collapsedDrawX2 =
+        getDrawX(collapsedBounds, getAbsoluteGravity(collapsedTextGravity), collapsedTextWidth2);
+    expandedDrawX2 =
+        getDrawX(expandedBounds, getAbsoluteGravity(expandedTextGravity), expandedTextWidth2);
+
+    clearTexture2();
+    setInterpolatedTextSize2(expandedFraction);
+  }
+
+  private void calculateCollapsedText() {
+    if (textToDraw != null && textLayout != null) {
+      textToDrawCollapsed =
+          TextUtils.ellipsize(textToDraw, textPaint, textLayout.getWidth(), TruncateAt.END);
+      crossSectionText = removeEllipsis(textToDrawCollapsed);
+    }
+    if (textToDrawCollapsed != null) {
+      collapsedTextWidth = measureTextWidth(textPaint, textToDrawCollapsed);
+    } else {
+      collapsedTextWidth = 0;
+    }
+  }
+
+  private void calculateCollapsedText2() {
+    if (textToDraw2 != null && textLayout2 != null) {
+      textToDrawCollapsed2 =
+          TextUtils.ellipsize(textToDraw2, textPaint2, textLayout2.getWidth(), TruncateAt.END);
+      crossSectionText2 = removeEllipsis(textToDrawCollapsed2);
+    }
+    if (textToDrawCollapsed2 != null) {
+      collapsedTextWidth2 = measureTextWidth(textPaint2, textToDrawCollapsed2);
+    } else {
+      collapsedTextWidth2 = 0;
+    }
+  }
+
+  /**
+   * Refreshes copies of the collapsed subtitle after its digits were replaced, using the collapsed
+   * paint and layout regardless of the current fraction. Equal digit advances keep its width.
+   */
+  private void calculateCollapsedTextCopies2(@NonNull StaticLayout collapsedLayout) {
+    getTextPaintCollapsed2(tmpPaint2);
+    textToDrawCollapsed2 =
+        TextUtils.ellipsize(
+            collapsedLayout.getText(), tmpPaint2, collapsedLayout.getWidth(), TruncateAt.END);
+    crossSectionText2 = removeEllipsis(textToDrawCollapsed2);
+  }
+
+  private float calculateExpandedTextWidth() {
+    if (textLayout != null && maxLines > 1) {
+      return textLayout.getWidth();
+    } else if (textToDraw != null) {
+      return measureTextWidth(textPaint, textToDraw);
+    }
+    return 0;
+  }
+
+  private float calculateExpandedTextWidth2() {
+    if (textLayout2 != null && maxLines2 > 1) {
+      return textLayout2.getWidth();
+    } else if (textToDraw2 != null) {
+      return measureTextWidth(textPaint2, textToDraw2);
+    }
+    return 0;
+  }
+
+  private int getAbsoluteGravity(int gravity) {
+    return GravityCompat.getAbsoluteGravity(
+        gravity, isRtl ? ViewCompat.LAYOUT_DIRECTION_RTL : ViewCompat.LAYOUT_DIRECTION_LTR);
+  }
+
+  private static float getDrawX(@NonNull Rect bounds, int absoluteGravity, float textWidth) {
+    switch (absoluteGravity & GravityCompat.RELATIVE_HORIZONTAL_GRAVITY_MASK) {
+      case Gravity.CENTER_HORIZONTAL:
+        return bounds.centerX() - (textWidth / 2);
+      case Gravity.RIGHT:
+        return bounds.right - textWidth;
+      case Gravity.LEFT:
+      default:
+        return bounds.left;
+    }
+  }
+
   private float measureTextWidth(TextPaint textPaint, CharSequence textToDraw) {
     return textPaint.measureText(textToDraw, 0, textToDraw.length());
   }
 
-  private void interpolateBounds(float fraction) {
+  private void interpolateBounds(float fraction, float positionFraction) {
     if (fadeModeEnabled) {
       currentBounds.set(fraction < fadeModeThresholdFraction ? expandedBounds : collapsedBounds);
     } else {
       currentBounds.left =
-          lerp(expandedBounds.left, collapsedBounds.left, fraction, positionInterpolator);
-      currentBounds.top = lerp(expandedDrawY, collapsedDrawY, fraction, positionInterpolator);
+          AnimationUtils.lerp(expandedBounds.left, collapsedBounds.left, positionFraction);
+      currentBounds.top = AnimationUtils.lerp(expandedDrawY, collapsedDrawY, positionFraction);
       currentBounds.right =
-          lerp(expandedBounds.right, collapsedBounds.right, fraction, positionInterpolator);
+          AnimationUtils.lerp(expandedBounds.right, collapsedBounds.right, positionFraction);
       currentBounds.bottom =
-          lerp(expandedBounds.bottom, collapsedBounds.bottom, fraction, positionInterpolator);
+          AnimationUtils.lerp(expandedBounds.bottom, collapsedBounds.bottom, positionFraction);
     }
   }
 
   private void setCollapsedTextBlend(float blend) {
-    collapsedTextBlend = blend;
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (collapsedTextBlend != blend) {
+      collapsedTextBlend = blend;
+      drawStateChanged = true;
+    }
   }
 
   private void setCollapsedTextBlend2(float blend) {
-    collapsedTextBlend2 = blend;
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (collapsedTextBlend2 != blend) {
+      collapsedTextBlend2 = blend;
+      drawStateChanged = true;
+    }
   }
 
   private void setExpandedTextBlend(float blend) {
-    expandedTextBlend = blend;
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (expandedTextBlend != blend) {
+      expandedTextBlend = blend;
+      drawStateChanged = true;
+    }
   }
 
   private void setExpandedTextBlend2(float blend) {
-    expandedTextBlend2 = blend;
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (expandedTextBlend2 != blend) {
+      expandedTextBlend2 = blend;
+      drawStateChanged = true;
+    }
   }
 
   public void draw(@NonNull Canvas canvas) {
@@ -1243,6 +1532,9 @@ public final class CollapsingTextHelper2 {
       float x = currentDrawX;
       float y = currentDrawY;
       final boolean drawTexture = useTexture && expandedTitleTexture != null;
+      final boolean drawMultiline =
+          shouldDrawMultiline()
+              && (!fadeModeEnabled || expandedFraction > fadeModeThresholdFraction);
 
       if (DEBUG_DRAW) {
         // Just a debug tool, which drawn a magenta rect in the text bounds
@@ -1254,6 +1546,15 @@ public final class CollapsingTextHelper2 {
             DEBUG_DRAW_PAINT);
       }
 
+      if (VERSION.SDK_INT >= VERSION_CODES.Q
+          && !drawTexture
+          && !drawMultiline
+          && shouldDrawRenderNode(canvas)
+          && drawRenderNode(canvas, x, y)) {
+        canvas.restoreToCount(saveCount);
+        return;
+      }
+
       if (scale != 1f && !fadeModeEnabled) {
         canvas.scale(scale, scale, x, y);
       }
@@ -1265,8 +1566,7 @@ public final class CollapsingTextHelper2 {
         return;
       }
 
-      if (shouldDrawMultiline()
-          && (!fadeModeEnabled || expandedFraction > fadeModeThresholdFraction)) {
+      if (drawMultiline) {
         drawMultilineTransition(canvas, currentDrawX - textLayout.getLineStart(0), y);
       } else {
         canvas.translate(x, y);
@@ -1284,7 +1584,10 @@ public final class CollapsingTextHelper2 {
       textPaint2.setTextSize(currentTextSize2);
       float x = currentDrawX2;
       float y = currentDrawY2;
-      final boolean drawTexture = useTexture && expandedTitleTexture2 != null;
+      final boolean drawTexture = useTexture2 && expandedTitleTexture2 != null;
+      final boolean drawMultiline =
+          shouldDrawMultiline2()
+              && (!fadeModeEnabled || expandedFraction > fadeModeThresholdFraction);
 
       if (DEBUG_DRAW) {
         // Just a debug tool, which drawn a magenta rect in the text bounds
@@ -1296,6 +1599,15 @@ public final class CollapsingTextHelper2 {
             DEBUG_DRAW_PAINT);
       }
 
+      if (VERSION.SDK_INT >= VERSION_CODES.Q
+          && !drawTexture
+          && !drawMultiline
+          && shouldDrawRenderNode(canvas)
+          && drawRenderNode2(canvas, x, y)) {
+        canvas.restoreToCount(saveCount);
+        return;
+      }
+
       if (scale2 != 1f && !fadeModeEnabled) {
         canvas.scale(scale2, scale2, x, y);
       }
@@ -1307,8 +1619,7 @@ public final class CollapsingTextHelper2 {
         return;
       }
 
-      if (shouldDrawMultiline2()
-          && (!fadeModeEnabled || expandedFraction > fadeModeThresholdFraction)) {
+      if (drawMultiline) {
         drawMultilineTransition2(canvas, currentDrawX2 - textLayout2.getLineStart(0), y);
       } else {
         canvas.translate(x, y);
@@ -1319,12 +1630,56 @@ public final class CollapsingTextHelper2 {
     }
   }
 
+  private boolean shouldDrawRenderNode(@NonNull Canvas canvas) {
+    return renderNodeEnabled && canvas.isHardwareAccelerated();
+  }
+
+  /** Draws the title from its render node, returning false if it has to be drawn directly. */
+  @RequiresApi(VERSION_CODES.Q)
+  private boolean drawRenderNode(@NonNull Canvas canvas, float x, float y) {
+    if (textRenderNode == null) {
+      textRenderNode = new TextRenderNode(TAG + ".title");
+    }
+    // Record text without fade, which is applied as alpha of the node instead
+    final int color = textPaint.getColor();
+    final int recordCount = textRenderNode.getRecordCount();
+    textPaint.setColor(currentTextColor);
+    final boolean drawn =
+        textRenderNode.draw(
+            canvas, textLayout, textPaint, x, y, fadeModeEnabled ? 1f : scale, currentFadeAlpha);
+    textPaint.setColor(color);
+    if (metricsEnabled) {
+      renderNodeRecordCount += textRenderNode.getRecordCount() - recordCount;
+    }
+    return drawn;
+  }
+
+  /** Draws the subtitle from its render node, returning false if it has to be drawn directly. */
+  @RequiresApi(VERSION_CODES.Q)
+  private boolean drawRenderNode2(@NonNull Canvas canvas, float x, float y) {
+    if (textRenderNode2 == null) {
+      textRenderNode2 = new TextRenderNode(TAG + ".subtitle");
+    }
+    // Record text without fade, which is applied as alpha of the node instead
+    final int color = textPaint2.getColor();
+    final int recordCount = textRenderNode2.getRecordCount();
+    textPaint2.setColor(currentTextColor2);
+    final boolean drawn =
+        textRenderNode2.draw(
+            canvas, textLayout2, textPaint2, x, y, fadeModeEnabled ? 1f : scale2, currentFadeAlpha);
+    textPaint2.setColor(color);
+    if (metricsEnabled) {
+      renderNodeRecordCount += textRenderNode2.getRecordCount() - recordCount;
+    }
+    return drawn;
+  }
+
   private boolean shouldDrawMultiline() {
     return maxLines > 1 && (!isRtl || fadeModeEnabled) && !useTexture;
   }
 
   private boolean shouldDrawMultiline2() {
-    return maxLines2 > 1 && (!isRtl || fadeModeEnabled) && !useTexture;
+    return maxLines2 > 1 && (!isRtl || fadeModeEnabled) && !useTexture2;
   }
 
   private void drawMultilineTransition(@NonNull Canvas canvas, float currentExpandedX, float y) {
@@ -1338,7 +1693,7 @@ public final class CollapsingTextHelper2 {
     // not opaque. Then Paint will respect to the color's alpha. Applying the shadow color for
     // expanded text.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint.setShadowLayer(
+      setShadowLayer(
           currentShadowRadius,
           currentShadowDx,
           currentShadowDy,
@@ -1350,7 +1705,7 @@ public final class CollapsingTextHelper2 {
     textPaint.setAlpha((int) (collapsedTextBlend * originalAlpha));
     // Workaround for API 31(+). Applying the shadow color for collapsed texct.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint.setShadowLayer(
+      setShadowLayer(
           currentShadowRadius,
           currentShadowDx,
           currentShadowDy,
@@ -1367,22 +1722,16 @@ public final class CollapsingTextHelper2 {
     // Reverse workaround for API 31(+). Applying opaque shadow color after the expanded text and
     // the collapsed text are drawn.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint.setShadowLayer(
-          currentShadowRadius, currentShadowDx, currentShadowDy, currentShadowColor);
+      setShadowLayer(currentShadowRadius, currentShadowDx, currentShadowDy, currentShadowColor);
     }
 
     if (!fadeModeEnabled) {
-      // Remove ellipsis for Cross-section animation
-      String tmp = textToDrawCollapsed.toString().trim();
-      if (tmp.endsWith(ELLIPSIS_NORMAL)) {
-        tmp = tmp.substring(0, tmp.length() - 1);
-      }
       // Cross-section between both texts (should stay at original alpha)
       textPaint.setAlpha(originalAlpha);
       canvas.drawText(
-          tmp,
+          crossSectionText,
           /* start = */ 0,
-          min(textLayout.getLineEnd(0), tmp.length()),
+          min(textLayout.getLineEnd(0), crossSectionText.length()),
           /* x = */ 0,
           lineBaseline,
           textPaint);
@@ -1400,7 +1749,7 @@ public final class CollapsingTextHelper2 {
     // not opaque. Then Paint will respect to the color's alpha. Applying the shadow color for
     // expanded text.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint2.setShadowLayer(
+      setShadowLayer2(
           currentShadowRadius2,
           currentShadowDx2,
           currentShadowDy2,
@@ -1412,7 +1761,7 @@ public final class CollapsingTextHelper2 {
     textPaint2.setAlpha((int) (collapsedTextBlend2 * originalAlpha));
     // Workaround for API 31(+). Applying the shadow color for collapsed texct.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint2.setShadowLayer(
+      setShadowLayer2(
           currentShadowRadius2,
           currentShadowDx2,
           currentShadowDy2,
@@ -1429,28 +1778,33 @@ public final class CollapsingTextHelper2 {
     // Reverse workaround for API 31(+). Applying opaque shadow color after the expanded text and
     // the collapsed text are drawn.
     if (VERSION.SDK_INT >= VERSION_CODES.S) {
-      textPaint2.setShadowLayer(
+      setShadowLayer2(
           currentShadowRadius2, currentShadowDx2, currentShadowDy2, currentShadowColor2);
     }
 
     if (!fadeModeEnabled) {
-      // Remove ellipsis for Cross-section animation
-      String tmp = textToDrawCollapsed2.toString().trim();
-      if (tmp.endsWith(ELLIPSIS_NORMAL)) {
-        tmp = tmp.substring(0, tmp.length() - 1);
-      }
       // Cross-section between both texts (should stay at original alpha)
       textPaint2.setAlpha(originalAlpha);
       canvas.drawText(
-          tmp,
+          crossSectionText2,
           /* start = */ 0,
-          min(textLayout2.getLineEnd(0), tmp.length()),
+          min(textLayout2.getLineEnd(0), crossSectionText2.length()),
           /* x = */ 0,
           lineBaseline,
           textPaint2);
     }
   }
 
+  /** Remove ellipsis for Cross-section animation. */
+  @NonNull
+  private static String removeEllipsis(@NonNull CharSequence text) {
+    String tmp = text.toString().trim();
+    if (tmp.endsWith(ELLIPSIS_NORMAL)) {
+      tmp = tmp.substring(0, tmp.length() - 1);
+    }
+    return tmp;
+  }
+
   private boolean calculateIsRtl(@NonNull CharSequence text) {
     final boolean defaultIsRtl = isDefaultIsRtl();
     return isRtlTextDirectionHeuristicsEnabled
@@ -1470,41 +1824,71 @@ public final class CollapsingTextHelper2 {
   }
 
   private void setInterpolatedTextSize(float fraction) {
+    final float previousScale = scale;
+    final StaticLayout previousTextLayout = textLayout;
     calculateUsingTextSize(fraction);
 
     // Use our texture if the scale isn't 1.0
-    useTexture = USE_SCALING_TEXTURE && scale != 1f;
+    useTexture =
+        (USE_SCALING_TEXTURE || (textureCachingEnabled && maxLines == 1 && canScaleTexture()))
+            && scale != 1f;
 
     if (useTexture) {
       // Make sure we have an expanded texture if needed
       ensureExpandedTexture();
     }
 
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (scale != previousScale || textLayout != previousTextLayout) {
+      drawStateChanged = true;
+    }
   }
 
   private void setInterpolatedTextSize2(float fraction) {
+    final float previousScale = scale2;
+    final StaticLayout previousTextLayout = textLayout2;
     calculateUsingTextSize2(fraction);
 
-    useTexture = USE_SCALING_TEXTURE && scale2 != 1f;
+    useTexture2 =
+        (USE_SCALING_TEXTURE || (textureCachingEnabled && maxLines2 == 1 && canScaleTexture2()))
+            && scale2 != 1f;
 
-    if (useTexture) {
+    if (useTexture2) {
       ensureExpandedTexture2();
     }
 
-    ViewCompat.postInvalidateOnAnimation(view);
+    if (scale2 != previousScale || textLayout2 != previousTextLayout) {
+      drawStateChanged = true;
+    }
   }
 
-  private void calculateUsingTextSize(final float fraction) {
-    calculateUsingTextSize(fraction, /* forceRecalculate= */ false);
+  /**
+   * Returns whether the title only changes size during the collapse, so that a texture of its
+   * expanded state can be scaled without freezing color, letter spacing or shadow.
+   */
+  private boolean canScaleTexture() {
+    return getCurrentExpandedTextColor() == getCurrentCollapsedTextColor()
+        && expandedLetterSpacing == collapsedLetterSpacing
+        && expandedShadowRadius == collapsedShadowRadius
+        && expandedShadowDx == collapsedShadowDx
+        && expandedShadowDy == collapsedShadowDy
+        && getCurrentColor(expandedShadowColor) == getCurrentColor(collapsedShadowColor);
   }
 
-  private void calculateUsingTextSize2(final float fraction) {
-    calculateUsingTextSize2(fraction, /* forceRecalculate= */ false);
+  /**
+   * Returns whether the subtitle only changes size during the collapse, so that a texture of its
+   * expanded state can be scaled without freezing color, letter spacing or shadow.
+   */
+  private boolean canScaleTexture2() {
+    return getCurrentExpandedTextColor2() == getCurrentCollapsedTextColor2()
+        && expandedLetterSpacing2 == collapsedLetterSpacing2
+        && expandedShadowRadius2 == collapsedShadowRadius2
+        && expandedShadowDx2 == collapsedShadowDx2
+        && expandedShadowDy2 == collapsedShadowDy2
+        && getCurrentColor(expandedShadowColor2) == getCurrentColor(collapsedShadowColor2);
   }
 
   @SuppressWarnings("ReferenceEquality") // Matches the Typeface comparison in TextView
-  private void calculateUsingTextSize(final float fraction, boolean forceRecalculate) {
+  private void calculateUsingTextSize(final float fraction) {
     if (text == null) {
       return;
     }
@@ -1539,7 +1923,7 @@ public final class CollapsingTextHelper2 {
       } else {
         // Else, we'll scale down from the expanded text size
         scale =
-            lerp(expandedTextSize, collapsedTextSize, fraction, textSizeInterpolator)
+            lerp(expandedTextSize, collapsedTextSize, fraction, frameTextSizeInterpolator)
                 / expandedTextSize;
       }
 
@@ -1548,21 +1932,15 @@ public final class CollapsingTextHelper2 {
       // collapsed text size
       float scaledDownWidth = expandedWidth * textSizeRatio;
 
-      if (forceRecalculate) {
-        // If we're forcing a recalculate during a measure pass, use the expanded width since the
-        // collapsed width might not be ready yet
-        availableWidth = expandedWidth;
-      } else {
-        // If the scaled down size is larger than the actual collapsed width, we need to
-        // cap the available width so that when the expanded text scales down, it matches
-        // the collapsed width
-        // Otherwise we'll just use the expanded width
-
-        availableWidth =
-            scaledDownWidth > collapsedWidth
-                ? min(collapsedWidth / textSizeRatio, expandedWidth)
-                : expandedWidth;
-      }
+      // If the scaled down size is larger than the actual collapsed width, we need to
+      // cap the available width so that when the expanded text scales down, it matches
+      // the collapsed width
+      // Otherwise we'll just use the expanded width
+
+      availableWidth =
+          scaledDownWidth > collapsedWidth
+              ? min(collapsedWidth / textSizeRatio, expandedWidth)
+              : expandedWidth;
     }
 
     if (availableWidth > 0) {
@@ -1584,13 +1962,25 @@ public final class CollapsingTextHelper2 {
       textPaint.setLinearText(scale != 1f);
 
       isRtl = calculateIsRtl(text);
-      textLayout = createStaticLayout(shouldDrawMultiline() ? maxLines : 1, availableWidth, isRtl);
+      if (isClose(fraction, /* targetValue= */ 1)) {
+        if (collapsedTextLayout == null) {
+          collapsedTextLayout =
+              createStaticLayout(shouldDrawMultiline() ? maxLines : 1, availableWidth, isRtl);
+        }
+        textLayout = collapsedTextLayout;
+      } else {
+        if (expandedTextLayout == null) {
+          expandedTextLayout =
+              createStaticLayout(shouldDrawMultiline() ? maxLines : 1, availableWidth, isRtl);
+        }
+        textLayout = expandedTextLayout;
+      }
       textToDraw = textLayout.getText();
     }
   }
 
   @SuppressWarnings("ReferenceEquality") // Matches the Typeface comparison in TextView
-  private void calculateUsingTextSize2(final float fraction, boolean forceRecalculate) {
+  private void calculateUsingTextSize2(final float fraction) {
     if (text2 == null) {
       return;
     }
@@ -1625,7 +2015,7 @@ public final class CollapsingTextHelper2 {
       } else {
         // Else, we'll scale down from the expanded text size
         scale2 =
-            lerp(expandedTextSize2, collapsedTextSize2, fraction, textSizeInterpolator)
+            lerp(expandedTextSize2, collapsedTextSize2, fraction, frameTextSizeInterpolator)
                 / expandedTextSize2;
       }
 
@@ -1634,21 +2024,15 @@ public final class CollapsingTextHelper2 {
       // collapsed text size
       float scaledDownWidth = expandedWidth * textSizeRatio;
 
-      if (forceRecalculate) {
-        // If we're forcing a recalculate during a measure pass, use the expanded width since the
-        // collapsed width might not be ready yet
-        availableWidth = expandedWidth;
-      } else {
-        // If the scaled down size is larger than the actual collapsed width, we need to
-        // cap the available width so that when the expanded text scales down, it matches
-        // the collapsed width
-        // Otherwise we'll just use the expanded width
-
-        availableWidth =
-            scaledDownWidth > collapsedWidth
-                ? min(collapsedWidth / textSizeRatio, expandedWidth)
-                : expandedWidth;
-      }
+      // If the scaled down size is larger than the actual collapsed width, we need to
+      // cap the available width so that when the expanded text scales down, it matches
+      // the collapsed width
+      // Otherwise we'll just use the expanded width
+
+      availableWidth =
+          scaledDownWidth > collapsedWidth
+              ? min(collapsedWidth / textSizeRatio, expandedWidth)
+              : expandedWidth;
     }
 
     if (availableWidth > 0) {
@@ -1670,17 +2054,43 @@ public final class CollapsingTextHelper2 {
       textPaint2.setLinearText(scale2 != 1f);
 
       isRtl = calculateIsRtl(text2);
-      textLayout2 =
-          createStaticLayout2(shouldDrawMultiline2() ? maxLines2 : 1, availableWidth, isRtl);
+      if (isClose(fraction, /* targetValue= */ 1)) {
+        if (collapsedTextLayout2 == null) {
+          collapsedTextLayout2 =
+              createStaticLayout2(shouldDrawMultiline2() ? maxLines2 : 1, availableWidth, isRtl);
+        }
+        textLayout2 = collapsedTextLayout2;
+      } else {
+        if (expandedTextLayout2 == null) {
+          expandedTextLayout2 =
+              createStaticLayout2(shouldDrawMultiline2() ? maxLines2 : 1, availableWidth, isRtl);
+        }
+        textLayout2 = expandedTextLayout2;
+      }
       textToDraw2 = textLayout2.getText();
     }
   }
 
   private StaticLayout createStaticLayout(int maxLines, float availableWidth, boolean isRtl) {
-    StaticLayout textLayout = null;
+    // In multiline mode, the text alignment should be controlled by the static layout.
+    Alignment textAlignment = maxLines == 1 ? ALIGN_NORMAL : getMultilineTextLayoutAlignment();
+    StaticLayout textLayout =
+        textLayoutCache.get(
+            text,
+            textPaint,
+            (int) availableWidth,
+            maxLines,
+            textAlignment,
+            isRtl,
+            lineSpacingAdd,
+            lineSpacingMultiplier,
+            hyphenationFrequency);
+    if (textLayout != null) {
+      return textLayout;
+    }
+    final long startNanos = metricsEnabled ? System.nanoTime() : 0;
+    Trace.beginSection(TRACE_CREATE_STATIC_LAYOUT);
     try {
-      // In multiline mode, the text alignment should be controlled by the static layout.
-      Alignment textAlignment = maxLines == 1 ? ALIGN_NORMAL : getMultilineTextLayoutAlignment();
       textLayout =
           StaticLayoutBuilderCompat.obtain(text, textPaint, (int) availableWidth)
               .setEllipsize(TruncateAt.END)
@@ -1693,16 +2103,53 @@ public final class CollapsingTextHelper2 {
               .build();
     } catch (StaticLayoutBuilderCompatException e) {
       Log.e(TAG, e.getCause().getMessage(), e);
+    } finally {
+      Trace.endSection();
+    }
+    if (metricsEnabled) {
+      staticLayoutNanos += System.nanoTime() - startNanos;
+      staticLayoutCount++;
     }
 
-    return checkNotNull(textLayout);
+    textLayoutCache.put(
+        checkNotNull(textLayout),
+        text,
+        textPaint,
+        (int) availableWidth,
+        maxLines,
+        textAlignment,
+        isRtl,
+        lineSpacingAdd,
+        lineSpacingMultiplier,
+        hyphenationFrequency);
+    return textLayout;
   }
 
   private StaticLayout createStaticLayout2(int maxLines, float availableWidth, boolean isRtl) {
-    StaticLayout textLayout = null;
+    final CharSequence text2 = digitText2 != null ? digitText2 : this.text2;
+    // In multiline mode, the text alignment should be controlled by the static layout.
+    Alignment textAlignment = maxLines == 1 ? ALIGN_NORMAL : getMultilineTextLayoutAlignment();
+    // Digit text changes in place, layouts of it are not cached so that none outlives its text
+    StaticLayout textLayout =
+        digitText2 != null
+            ? null
+            : textLayoutCache2.get(
+                text2,
+                textPaint2,
+                (int) availableWidth,
+                maxLines,
+                textAlignment,
+                isRtl,
+                lineSpacingAdd2,
+                lineSpacingMultiplier2,
+                hyphenationFrequency2);
+    if (textLayout != null) {
+      layoutDigitText2 = null;
+      return textLayout;
+    }
+    final long startNanos = metricsEnabled ? System.nanoTime() : 0;
+    Trace.beginSection(TRACE_CREATE_STATIC_LAYOUT2);
     try {
-      // In multiline mode, the text alignment should be controlled by the static layout.
-      Alignment textAlignment = maxLines == 1 ? ALIGN_NORMAL : getMultilineTextLayoutAlignment();
       textLayout =
           StaticLayoutBuilderCompat.obtain(text2, textPaint2, (int) availableWidth)
               .setEllipsize(TruncateAt.END)
@@ -1715,8 +2162,28 @@ public final class CollapsingTextHelper2 {
               .build();
     } catch (StaticLayoutBuilderCompatException e) {
       Log.e(TAG, e.getCause().getMessage(), e);
+    } finally {
+      Trace.endSection();
+    }
+    if (metricsEnabled) {
+      staticLayoutNanos += System.nanoTime() - startNanos;
+      staticLayoutCount++;
+    }
+
+    layoutDigitText2 = digitText2;
+    if (digitText2 == null) {
+      textLayoutCache2.put(
+          checkNotNull(textLayout),
+          text2,
+          textPaint2,
+          (int) availableWidth,
+          maxLines,
+          textAlignment,
+          isRtl,
+          lineSpacingAdd2,
+          lineSpacingMultiplier2,
+          hyphenationFrequency2);
     }
-
     return checkNotNull(textLayout);
   }
 
@@ -1740,7 +2207,6 @@ public final class CollapsingTextHelper2 {
       return;
     }
 
-    calculateOffsets(0f);
     int width = textLayout.getWidth();
     int height = textLayout.getHeight();
 
@@ -1750,7 +2216,22 @@ public final class CollapsingTextHelper2 {
 
     expandedTitleTexture = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
     Canvas c = new Canvas(expandedTitleTexture);
+    // The texture is always of expanded text, draw it with expanded paint without touching the
+    // state of current frame
+    tmpPaint.set(textPaint);
+    textPaint.setTextSize(expandedTextSize);
+    textPaint.setLinearText(false);
+    textPaint.setColor(getCurrentExpandedTextColor());
+    if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+      textPaint.setLetterSpacing(expandedLetterSpacing);
+    }
+    textPaint.setShadowLayer(
+        expandedShadowRadius,
+        expandedShadowDx,
+        expandedShadowDy,
+        getCurrentColor(expandedShadowColor));
     textLayout.draw(c);
+    textPaint.set(tmpPaint);
 
     if (texturePaint == null) {
       // Make sure we have a paint
@@ -1765,7 +2246,6 @@ public final class CollapsingTextHelper2 {
       return;
     }
 
-    calculateOffsets(0f);
     int width = textLayout2.getWidth();
     int height = textLayout2.getHeight();
 
@@ -1775,7 +2255,22 @@ public final class CollapsingTextHelper2 {
 
     expandedTitleTexture2 = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
     Canvas c = new Canvas(expandedTitleTexture2);
+    // The texture is always of expanded text, draw it with expanded paint without touching the
+    // state of current frame
+    tmpPaint2.set(textPaint2);
+    textPaint2.setTextSize(expandedTextSize2);
+    textPaint2.setLinearText(false);
+    textPaint2.setColor(getCurrentExpandedTextColor2());
+    if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+      textPaint2.setLetterSpacing(expandedLetterSpacing2);
+    }
+    textPaint2.setShadowLayer(
+        expandedShadowRadius2,
+        expandedShadowDx2,
+        expandedShadowDy2,
+        getCurrentColor(expandedShadowColor2));
     textLayout2.draw(c);
+    textPaint2.set(tmpPaint2);
 
     if (texturePaint2 == null) {
       // Make sure we have a paint
@@ -1783,16 +2278,193 @@ public final class CollapsingTextHelper2 {
     }
   }
 
-  public void recalculate() {
-    recalculate(/* forceRecalculate= */ false);
+  /**
+   * Sets whether single-line text should be drawn from a bitmap of the expanded text while it is
+   * scaling, instead of drawing glyphs on every frame. Text is drawn normally at rest, and while
+   * its color, letter spacing or shadow differ between collapsed and expanded states.
+   */
+  public void setTextureCachingEnabled(boolean textureCachingEnabled) {
+    if (this.textureCachingEnabled != textureCachingEnabled) {
+      this.textureCachingEnabled = textureCachingEnabled;
+      clearTexture();
+      clearTexture2();
+      recalculate();
+    }
+  }
+
+  public boolean isTextureCachingEnabled() {
+    return textureCachingEnabled;
   }
 
+  /**
+   * Sets whether single-line text should be recorded into a {@code RenderNode} on API 29+, so that
+   * moving and scaling it only updates node properties. Text is re-recorded when its layout or
+   * paint changes.
+   */
+  public void setRenderNodeEnabled(boolean renderNodeEnabled) {
+    if (this.renderNodeEnabled != renderNodeEnabled) {
+      this.renderNodeEnabled = renderNodeEnabled;
+      if (!renderNodeEnabled && VERSION.SDK_INT >= VERSION_CODES.Q) {
+        if (textRenderNode != null) {
+          textRenderNode.discard();
+        }
+        if (textRenderNode2 != null) {
+          textRenderNode2.discard();
+        }
+      }
+      ViewCompat.postInvalidateOnAnimation(view);
+    }
+  }
+
+  public boolean isRenderNodeEnabled() {
+    return renderNodeEnabled;
+  }
+
+  /**
+   * Sets whether the subtitle should be drawn with tabular numbers, whose digits share the same
+   * advance. Replacing digits of such subtitle then patches its current layouts instead of building
+   * new ones.
+   */
+  public void setTabularNumbersEnabled2(boolean tabularNumbersEnabled) {
+    if (this.tabularNumbersEnabled2 != tabularNumbersEnabled) {
+      this.tabularNumbersEnabled2 = tabularNumbersEnabled;
+      if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+        final String fontFeatureSettings =
+            tabularNumbersEnabled ? FONT_FEATURE_TABULAR_NUMBERS : null;
+        textPaint2.setFontFeatureSettings(fontFeatureSettings);
+        tmpPaint2.setFontFeatureSettings(fontFeatureSettings);
+      }
+      digitText2 = createDigitText2(text2);
+      textToDraw2 = null;
+      clearTextLayouts2();
+      clearTexture2();
+      recalculate();
+    }
+  }
+
+  public boolean isTabularNumbersEnabled2() {
+    return tabularNumbersEnabled2;
+  }
+
+  /**
+   * Sets whether time spent in offset calculation and text layout building should be accumulated,
+   * to be read from the getters below until {@link #resetMetrics()} is called.
+   */
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+    resetMetrics();
+  }
+
+  public boolean isMetricsEnabled() {
+    return metricsEnabled;
+  }
+
+  /** Returns the accumulated time in nanoseconds spent calculating current offsets. */
+  public long getCalculateOffsetsNanos() {
+    return calculateOffsetsNanos;
+  }
+
+  /** Returns the accumulated time in nanoseconds spent calculating base offsets. */
+  public long getCalculateBaseOffsetsNanos() {
+    return calculateBaseOffsetsNanos;
+  }
+
+  /** Returns the accumulated time in nanoseconds spent building title and subtitle layouts. */
+  public long getStaticLayoutNanos() {
+    return staticLayoutNanos;
+  }
+
+  /** Returns the number of title and subtitle layouts built, excluding those reused from cache. */
+  public int getStaticLayoutCount() {
+    return staticLayoutCount;
+  }
+
+  /** Returns the number of times title and subtitle were recorded into render nodes. */
+  public int getRenderNodeRecordCount() {
+    return renderNodeRecordCount;
+  }
+
+  public void resetMetrics() {
+    calculateOffsetsNanos = 0;
+    calculateBaseOffsetsNanos = 0;
+    staticLayoutNanos = 0;
+    staticLayoutCount = 0;
+    renderNodeRecordCount = 0;
+  }
+
+  /**
+   * Recalculates like {@link #recalculate()}, unless nothing that text layouts and offsets depend
+   * on has changed since the last recalculation.
+   */
+  public void recalculateIfNeeded() {
+    if (recalculateNeeded || recalculatedLayoutDirection != ViewCompat.getLayoutDirection(view)) {
+      recalculate();
+    }
+  }
+
+  /**
+   * Defers recalculation until the matching {@link #endBatchEdit()}, so that setting many
+   * properties recalculates once. Batch edits may be nested.
+   */
+  public void beginBatchEdit() {
+    batchEditNesting++;
+  }
+
+  /** Ends a batch edit, recalculating if anything has changed since the outermost one began. */
+  public void endBatchEdit() {
+    if (batchEditNesting == 0) {
+      throw new IllegalStateException("endBatchEdit() called without beginBatchEdit().");
+    }
+    if (--batchEditNesting == 0 && recalculateNeeded) {
+      recalculate();
+    }
+  }
+
+  public boolean isInBatchEdit() {
+    return batchEditNesting > 0;
+  }
+
+  /**
+   * Recalculates unconditionally when forced, otherwise only if needed.
+   *
+   * @deprecated Forcing no longer changes how text is laid out, use {@link #recalculate()} or
+   *     {@link #recalculateIfNeeded()} instead.
+   */
+  @Deprecated
   public void recalculate(boolean forceRecalculate) {
-    if ((view.getHeight() > 0 && view.getWidth() > 0) || forceRecalculate) {
+    if (forceRecalculate) {
+      recalculate();
+    } else {
+      recalculateIfNeeded();
+    }
+  }
+
+  public void recalculate() {
+    // Anything that leads here may change the text metrics, so the kept layouts are stale
+    recalculateNeeded = true;
+    digitAdvancesValid2 = false;
+    clearTextLayouts();
+    clearTextLayouts2();
+    if (batchEditNesting > 0) {
+      return;
+    }
+    if (view.getHeight() > 0 && view.getWidth() > 0) {
       // If we've already been laid out, calculate everything now otherwise we'll wait
       // until a layout
-      calculateBaseOffsets(forceRecalculate);
-      calculateCurrentOffsets();
+      Trace.beginSection(TRACE_RECALCULATE);
+      try {
+        final long startNanos = metricsEnabled ? System.nanoTime() : 0;
+        calculateBaseOffsets();
+        if (metricsEnabled) {
+          calculateBaseOffsetsNanos += System.nanoTime() - startNanos;
+        }
+        drawStateChanged = true;
+        calculateCurrentOffsets();
+        recalculateNeeded = false;
+        recalculatedLayoutDirection = ViewCompat.getLayoutDirection(view);
+      } finally {
+        Trace.endSection();
+      }
     }
   }
 
@@ -1803,10 +2475,16 @@ public final class CollapsingTextHelper2 {
    */
   public void setText(@Nullable CharSequence text) {
     if (text == null || !TextUtils.equals(this.text, text)) {
+      final CharSequence previousText = this.text;
       this.text = text;
       textToDraw = null;
+      clearTextLayouts();
       clearTexture();
-      recalculate();
+      if (canRecalculateText(previousText, text)) {
+        recalculateText();
+      } else {
+        recalculate();
+      }
     }
   }
 
@@ -1817,11 +2495,220 @@ public final class CollapsingTextHelper2 {
    */
   public void setText2(@Nullable CharSequence text) {
     if (text == null || !TextUtils.equals(this.text2, text)) {
+      final CharSequence previousText = this.text2;
+      if (canReplaceDigits2(previousText, text)) {
+        this.text2 = text;
+        replaceDigits2(checkNotNull(text));
+        return;
+      }
       this.text2 = text;
+      digitText2 = createDigitText2(text);
       textToDraw2 = null;
-      clearTexture();
+      clearTextLayouts2();
+      clearTexture2();
+      if (canRecalculateText(previousText, text)) {
+        recalculateText2();
+      } else {
+        recalculate();
+      }
+    }
+  }
+
+  /**
+   * Returns whether replacing a text can keep offsets of the other one, which is when everything
+   * else is up to date and the text keeps its presence and direction.
+   */
+  private boolean canRecalculateText(
+      @Nullable CharSequence previousText, @Nullable CharSequence text) {
+    return batchEditNesting == 0
+        && !recalculateNeeded
+        && recalculatedLayoutDirection == ViewCompat.getLayoutDirection(view)
+        && view.getWidth() > 0
+        && view.getHeight() > 0
+        && previousText != null
+        && text != null
+        && TextUtils.isEmpty(previousText) == TextUtils.isEmpty(text)
+        && calculateIsRtl(previousText) == calculateIsRtl(text);
+  }
+
+  /**
+   * Returns whether the subtitle can be replaced by patching digits of its current layouts, which
+   * is when it only differs in digits of equal advance in both collapsed and expanded paints.
+   */
+  private boolean canReplaceDigits2(
+      @Nullable CharSequence previousText, @Nullable CharSequence text) {
+    if (digitText2 == null
+        || layoutDigitText2 != digitText2
+        || textLayout2 == null
+        || collapsedTextLayout2 == null
+        || text instanceof Spanned
+        || !canRecalculateText(previousText, text)) {
+      return false;
+    }
+    if (!digitAdvancesValid2) {
+      getTextPaintCollapsed2(tmpPaint2);
+      tmpPaint2.getTextWidths(DIGITS, collapsedDigitAdvances2);
+      getTextPaintExpanded2(tmpPaint2);
+      tmpPaint2.getTextWidths(DIGITS, expandedDigitAdvances2);
+      digitAdvancesValid2 = true;
+    }
+    return digitText2.canReplaceDigits(
+        checkNotNull(text), collapsedDigitAdvances2, expandedDigitAdvances2);
+  }
+
+  private void replaceDigits2(@NonNull CharSequence text) {
+    // Layouts read the patched characters, only copies of the text and drawn caches are refreshed
+    checkNotNull(digitText2).replaceDigits(text);
+    calculateCollapsedTextCopies2(checkNotNull(collapsedTextLayout2));
+    clearTexture2();
+    if (VERSION.SDK_INT >= VERSION_CODES.Q && textRenderNode2 != null) {
+      textRenderNode2.discard();
+    }
+    drawStateChanged = true;
+    calculateCurrentOffsets();
+  }
+
+  @Nullable
+  private DigitText createDigitText2(@Nullable CharSequence text) {
+    return tabularNumbersEnabled2 && text != null && !(text instanceof Spanned)
+        ? new DigitText(text)
+        : null;
+  }
+
+  private void recalculateText() {
+    final int previousLineCount = expandedLineCount;
+    final int previousLayoutHeight = expandedLayoutHeight;
+    final long startNanos = metricsEnabled ? System.nanoTime() : 0;
+    calculateTextBaseOffsets();
+    if (metricsEnabled) {
+      calculateBaseOffsetsNanos += System.nanoTime() - startNanos;
+    }
+    if (expandedLineCount != previousLineCount
+        || expandedLayoutHeight != previousLayoutHeight) {
+      // Title height moves the subtitle, fallback fonts may change it with the same line count
+      recalculate();
+      return;
+    }
+    drawStateChanged = true;
+    calculateCurrentOffsets();
+  }
+
+  private void recalculateText2() {
+    final int previousLineCount = expandedLineCount2;
+    final int previousLayoutHeight = expandedLayoutHeight2;
+    final long startNanos = metricsEnabled ? System.nanoTime() : 0;
+    calculateTextBaseOffsets2();
+    if (metricsEnabled) {
+      calculateBaseOffsetsNanos += System.nanoTime() - startNanos;
+    }
+    if (expandedLineCount2 != previousLineCount
+        || expandedLayoutHeight2 != previousLayoutHeight) {
+      // Subtitle height moves the title, fallback fonts may change it with the same line count
       recalculate();
+      return;
     }
+    drawStateChanged = true;
+    calculateCurrentOffsets();
+  }
+
+  /**
+   * Set the title to display, whose line breaks were measured ahead of time with parameters from
+   * {@link #getTextMetricsParams()}.
+   */
+  public void setPrecomputedText(@Nullable PrecomputedTextCompat text) {
+    setText(text != null ? unwrapPrecomputedText(text) : null);
+  }
+
+  /**
+   * Set the subtitle to display, whose line breaks were measured ahead of time with parameters from
+   * {@link #getTextMetricsParams2()}.
+   */
+  public void setPrecomputedText2(@Nullable PrecomputedTextCompat text) {
+    setText2(text != null ? unwrapPrecomputedText(text) : null);
+  }
+
+  /**
+   * Returns the parameters matching the expanded title layout, so that title precomputed with them
+   * can skip measurement. Text direction is that of the view, use {@link
+   * #getTextMetricsParams(CharSequence)} when RTL text direction heuristics are enabled.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTextMetricsParams() {
+    return getTextMetricsParams(isDefaultIsRtl());
+  }
+
+  /**
+   * Returns the parameters matching the expanded title layout of given text, resolving its
+   * direction the same way the layout does.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTextMetricsParams(@NonNull CharSequence text) {
+    return getTextMetricsParams(calculateIsRtl(text));
+  }
+
+  /**
+   * Returns the parameters matching the expanded subtitle layout, so that subtitle precomputed with
+   * them can skip measurement. Text direction is that of the view, use {@link
+   * #getTextMetricsParams2(CharSequence)} when RTL text direction heuristics are enabled.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTextMetricsParams2() {
+    return getTextMetricsParams2(isDefaultIsRtl());
+  }
+
+  /**
+   * Returns the parameters matching the expanded subtitle layout of given text, resolving its
+   * direction the same way the layout does.
+   */
+  @NonNull
+  public PrecomputedTextCompat.Params getTextMetricsParams2(@NonNull CharSequence text) {
+    return getTextMetricsParams2(calculateIsRtl(text));
+  }
+
+  @NonNull
+  private PrecomputedTextCompat.Params getTextMetricsParams(boolean isRtl) {
+    final TextPaint paint = new TextPaint(textPaint);
+    getTextPaintExpanded(paint);
+    return createTextMetricsParams(
+        paint, shouldDrawMultiline() ? maxLines : 1, hyphenationFrequency, isRtl);
+  }
+
+  @NonNull
+  private PrecomputedTextCompat.Params getTextMetricsParams2(boolean isRtl) {
+    final TextPaint paint = new TextPaint(textPaint2);
+    getTextPaintExpanded2(paint);
+    return createTextMetricsParams(
+        paint, shouldDrawMultiline2() ? maxLines2 : 1, hyphenationFrequency2, isRtl);
+  }
+
+  @NonNull
+  private static PrecomputedTextCompat.Params createTextMetricsParams(
+      @NonNull TextPaint paint, int maxLines, int hyphenationFrequency, boolean isRtl) {
+    // Mirror the paint and StaticLayoutBuilderCompat configuration of the expanded layout, which
+    // is given a resolved direction rather than a heuristic
+    paint.setLinearText(false);
+    final PrecomputedTextCompat.Params.Builder builder =
+        new PrecomputedTextCompat.Params.Builder(paint)
+            .setTextDirection(isRtl ? TextDirectionHeuristics.RTL : TextDirectionHeuristics.LTR);
+    if (VERSION.SDK_INT >= VERSION_CODES.M) {
+      builder
+          .setBreakStrategy(Layout.BREAK_STRATEGY_SIMPLE)
+          .setHyphenationFrequency(
+              maxLines > 1 ? hyphenationFrequency : Layout.HYPHENATION_FREQUENCY_NONE);
+    }
+    return builder.build();
+  }
+
+  @NonNull
+  private static CharSequence unwrapPrecomputedText(@NonNull PrecomputedTextCompat text) {
+    // StaticLayout only reuses measurement of the platform PrecomputedText
+    if (VERSION.SDK_INT >= VERSION_CODES.Q) {
+      final PrecomputedText precomputedText = text.getPrecomputedText();
+      if (precomputedText != null) {
+        return precomputedText;
+      }
+    }
+    return text;
   }
 
   @Nullable
@@ -1834,11 +2721,24 @@ public final class CollapsingTextHelper2 {
     return text2;
   }
 
+  private void clearTextLayouts() {
+    collapsedTextLayout = null;
+    expandedTextLayout = null;
+  }
+
+  private void clearTextLayouts2() {
+    collapsedTextLayout2 = null;
+    expandedTextLayout2 = null;
+  }
+
   private void clearTexture() {
     if (expandedTitleTexture != null) {
       expandedTitleTexture.recycle();
       expandedTitleTexture = null;
     }
+  }
+
+  private void clearTexture2() {
     if (expandedTitleTexture2 != null) {
       expandedTitleTexture2.recycle();
       expandedTitleTexture2 = null;
@@ -1856,7 +2756,7 @@ public final class CollapsingTextHelper2 {
   public void setMaxLines2(int maxLines) {
     if (maxLines != this.maxLines2) {
       this.maxLines2 = maxLines;
-      clearTexture();
+      clearTexture2();
       recalculate();
     }
   }
@@ -1905,14 +2805,62 @@ public final class CollapsingTextHelper2 {
     return expandedLineCount2;
   }
 
+  /**
+   * Returns the number of lines the title would take when expanded in given width, without
+   * calculating offsets. The layout built for it is kept in cache for the next recalculation.
+   */
+  public int calculateExpandedLineCount(int expandedWidth) {
+    if (text == null || expandedWidth <= 0) {
+      return 0;
+    }
+    final boolean isRtl = calculateIsRtl(text);
+    final int maxLines =
+        this.maxLines > 1 && (!isRtl || fadeModeEnabled) && !useTexture ? this.maxLines : 1;
+    // Layouts keep the paint they are built with, so build with expanded state of the text paint
+    tmpPaint.set(textPaint);
+    textPaint.setTextSize(expandedTextSize);
+    textPaint.setTypeface(expandedTypeface);
+    if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+      textPaint.setLetterSpacing(expandedLetterSpacing);
+    }
+    final StaticLayout layout = createStaticLayout(maxLines, expandedWidth, isRtl);
+    textPaint.set(tmpPaint);
+    return layout.getLineCount();
+  }
+
+  /**
+   * Returns the number of lines the subtitle would take when expanded in given width, without
+   * calculating offsets. The layout built for it is kept in cache for the next recalculation.
+   */
+  public int calculateExpandedLineCount2(int expandedWidth) {
+    if (text2 == null || expandedWidth <= 0) {
+      return 0;
+    }
+    final boolean isRtl = calculateIsRtl(text2);
+    final int maxLines =
+        this.maxLines2 > 1 && (!isRtl || fadeModeEnabled) && !useTexture2 ? this.maxLines2 : 1;
+    // Layouts keep the paint they are built with, so build with expanded state of the text paint
+    tmpPaint2.set(textPaint2);
+    textPaint2.setTextSize(expandedTextSize2);
+    textPaint2.setTypeface(expandedTypeface2);
+    if (VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP) {
+      textPaint2.setLetterSpacing(expandedLetterSpacing2);
+    }
+    final StaticLayout layout = createStaticLayout2(maxLines, expandedWidth, isRtl);
+    textPaint2.set(tmpPaint2);
+    return layout.getLineCount();
+  }
+
   @RequiresApi(VERSION_CODES.M)
   public void setLineSpacingAdd(float spacingAdd) {
     this.lineSpacingAdd = spacingAdd;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
   public void setLineSpacingAdd2(float spacingAdd) {
     this.lineSpacingAdd2 = spacingAdd;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
@@ -1928,11 +2876,13 @@ public final class CollapsingTextHelper2 {
   @RequiresApi(VERSION_CODES.M)
   public void setLineSpacingMultiplier(@FloatRange(from = 0.0) float spacingMultiplier) {
     this.lineSpacingMultiplier = spacingMultiplier;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
   public void setLineSpacingMultiplier2(@FloatRange(from = 0.0) float spacingMultiplier) {
     this.lineSpacingMultiplier2 = spacingMultiplier;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
@@ -1948,11 +2898,13 @@ public final class CollapsingTextHelper2 {
   @RequiresApi(VERSION_CODES.M)
   public void setHyphenationFrequency(int hyphenationFrequency) {
     this.hyphenationFrequency = hyphenationFrequency;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
   public void setHyphenationFrequency2(int hyphenationFrequency) {
     this.hyphenationFrequency2 = hyphenationFrequency;
+    recalculateNeeded = true;
   }
 
   @RequiresApi(VERSION_CODES.M)
@@ -2015,10 +2967,11 @@ public final class CollapsingTextHelper2 {
 
   private static float lerp(
       float startValue, float endValue, float fraction, @Nullable TimeInterpolator interpolator) {
-    if (interpolator != null) {
-      fraction = interpolator.getInterpolation(fraction);
-    }
-    return AnimationUtils.lerp(startValue, endValue, fraction);
+    return AnimationUtils.lerp(startValue, endValue, interpolate(fraction, interpolator));
+  }
+
+  private static float interpolate(float fraction, @Nullable TimeInterpolator interpolator) {
+    return interpolator != null ? interpolator.getInterpolation(fraction) : fraction;
   }
 
   private static boolean rectEquals(@NonNull Rect r, int left, int top, int right, int bottom) {
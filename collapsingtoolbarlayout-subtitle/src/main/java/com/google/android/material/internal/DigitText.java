@@ -0,0 +1,93 @@
+package com.google.android.material.internal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Plain text whose digits can be replaced in place. Layouts built from it read its characters
+ * when drawing, so replacing digits with ones of equal advance keeps them valid without a rebuild.
+ */
+final class DigitText implements CharSequence {
+  @NonNull private final char[] chars;
+  private final int length;
+  @Nullable private String string;
+
+  DigitText(@NonNull CharSequence text) {
+    length = text.length();
+    chars = new char[length];
+    copy(text);
+  }
+
+  /**
+   * Returns whether given text has the same length and only differs from this one in digits whose
+   * advances are equal in every given table, indexed from {@code '0'}.
+   */
+  boolean canReplaceDigits(@NonNull CharSequence text, @NonNull float[]... advances) {
+    if (text.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      final char oldChar = chars[i];
+      final char newChar = text.charAt(i);
+      if (oldChar == newChar) {
+        continue;
+      }
+      if (!isDigit(oldChar) || !isDigit(newChar)) {
+        return false;
+      }
+      for (float[] table : advances) {
+        if (table[oldChar - '0'] != table[newChar - '0']) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Copies characters of given text, which must have the same length as this one. */
+  void replaceDigits(@NonNull CharSequence text) {
+    if (text.length() != length) {
+      throw new IllegalArgumentException("Text length must not change.");
+    }
+    copy(text);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException();
+    }
+    return chars[index];
+  }
+
+  @NonNull
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new String(chars, start, end - start);
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    if (string == null) {
+      string = new String(chars, 0, length);
+    }
+    return string;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private void copy(@NonNull CharSequence text) {
+    for (int i = 0; i < length; i++) {
+      chars[i] = text.charAt(i);
+    }
+    string = null;
+  }
+}
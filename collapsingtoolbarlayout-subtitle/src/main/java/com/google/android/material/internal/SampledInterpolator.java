@@ -0,0 +1,45 @@
+package com.google.android.material.internal;
+
+import android.animation.TimeInterpolator;
+import androidx.annotation.NonNull;
+
+/**
+ * An interpolator that samples another interpolator into a fixed-size table once, then evaluates
+ * by linearly interpolating between the two nearest samples. Trades negligible precision for a
+ * constant-time evaluation that does not depend on how expensive the source curve is.
+ */
+final class SampledInterpolator implements TimeInterpolator {
+  static final int DEFAULT_SAMPLE_COUNT = 201;
+
+  @NonNull private final float[] samples;
+
+  SampledInterpolator(@NonNull TimeInterpolator source) {
+    this(source, DEFAULT_SAMPLE_COUNT);
+  }
+
+  SampledInterpolator(@NonNull TimeInterpolator source, int sampleCount) {
+    if (sampleCount < 2) {
+      throw new IllegalArgumentException("Sample count must be at least 2.");
+    }
+    samples = new float[sampleCount];
+    final int lastIndex = sampleCount - 1;
+    for (int i = 0; i < sampleCount; i++) {
+      samples[i] = source.getInterpolation((float) i / lastIndex);
+    }
+  }
+
+  @Override
+  public float getInterpolation(float input) {
+    final int lastIndex = samples.length - 1;
+    if (input <= 0) {
+      return samples[0];
+    }
+    if (input >= 1) {
+      return samples[lastIndex];
+    }
+    final float position = input * lastIndex;
+    final int index = (int) position;
+    final float weight = position - index;
+    return samples[index] + (samples[index + 1] - samples[index]) * weight;
+  }
+}
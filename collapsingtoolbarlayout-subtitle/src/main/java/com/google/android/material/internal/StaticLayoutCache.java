@@ -0,0 +1,188 @@
+package com.google.android.material.internal;
+
+import android.graphics.Typeface;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A small least-recently-used cache of built {@link StaticLayout}, keyed on the text, the paint
+ * state that affects measurement and the layout parameters. Lookups are allocation-free, entries
+ * are kept in an array ordered from the most to the least recently used. Strings are compared by
+ * content, any other text by identity since its spans or characters may differ or change.
+ */
+final class StaticLayoutCache {
+  static final int DEFAULT_CAPACITY = 4;
+
+  @NonNull private final Entry[] entries;
+  private int size;
+
+  StaticLayoutCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  StaticLayoutCache(int capacity) {
+    entries = new Entry[capacity];
+  }
+
+  /** Returns the cached layout built with identical inputs, or null if there is none. */
+  @Nullable
+  StaticLayout get(
+      @NonNull CharSequence text,
+      @NonNull TextPaint paint,
+      int width,
+      int maxLines,
+      @NonNull Alignment alignment,
+      boolean isRtl,
+      float spacingAdd,
+      float spacingMultiplier,
+      int hyphenationFrequency) {
+    for (int i = 0; i < size; i++) {
+      final Entry entry = entries[i];
+      if (entry.matches(
+          text,
+          paint,
+          width,
+          maxLines,
+          alignment,
+          isRtl,
+          spacingAdd,
+          spacingMultiplier,
+          hyphenationFrequency)) {
+        moveToFront(i);
+        return entry.layout;
+      }
+    }
+    return null;
+  }
+
+  /** Stores a layout, evicting the least recently used one when the cache is full. */
+  void put(
+      @NonNull StaticLayout layout,
+      @NonNull CharSequence text,
+      @NonNull TextPaint paint,
+      int width,
+      int maxLines,
+      @NonNull Alignment alignment,
+      boolean isRtl,
+      float spacingAdd,
+      float spacingMultiplier,
+      int hyphenationFrequency) {
+    if (entries.length == 0) {
+      return;
+    }
+    if (size < entries.length) {
+      if (entries[size] == null) {
+        entries[size] = new Entry();
+      }
+      size++;
+    }
+    final int last = size - 1;
+    entries[last].set(
+        layout,
+        text,
+        paint,
+        width,
+        maxLines,
+        alignment,
+        isRtl,
+        spacingAdd,
+        spacingMultiplier,
+        hyphenationFrequency);
+    moveToFront(last);
+  }
+
+  private void moveToFront(int index) {
+    final Entry entry = entries[index];
+    System.arraycopy(entries, 0, entries, 1, index);
+    entries[0] = entry;
+  }
+
+  private static final class Entry {
+    private StaticLayout layout;
+    private CharSequence text;
+    private float textSize;
+    private Typeface typeface;
+    private float letterSpacing;
+    private int flags;
+    private String fontFeatureSettings;
+    private int width;
+    private int maxLines;
+    private Alignment alignment;
+    private boolean isRtl;
+    private float spacingAdd;
+    private float spacingMultiplier;
+    private int hyphenationFrequency;
+
+    void set(
+        StaticLayout layout,
+        CharSequence text,
+        TextPaint paint,
+        int width,
+        int maxLines,
+        Alignment alignment,
+        boolean isRtl,
+        float spacingAdd,
+        float spacingMultiplier,
+        int hyphenationFrequency) {
+      this.layout = layout;
+      this.text = text;
+      textSize = paint.getTextSize();
+      typeface = paint.getTypeface();
+      letterSpacing = getLetterSpacing(paint);
+      flags = paint.getFlags();
+      fontFeatureSettings = getFontFeatureSettings(paint);
+      this.width = width;
+      this.maxLines = maxLines;
+      this.alignment = alignment;
+      this.isRtl = isRtl;
+      this.spacingAdd = spacingAdd;
+      this.spacingMultiplier = spacingMultiplier;
+      this.hyphenationFrequency = hyphenationFrequency;
+    }
+
+    @SuppressWarnings("ReferenceEquality") // Matches the Typeface comparison in TextView
+    boolean matches(
+        CharSequence text,
+        TextPaint paint,
+        int width,
+        int maxLines,
+        Alignment alignment,
+        boolean isRtl,
+        float spacingAdd,
+        float spacingMultiplier,
+        int hyphenationFrequency) {
+      return this.width == width
+          && this.maxLines == maxLines
+          && this.alignment == alignment
+          && this.isRtl == isRtl
+          && this.spacingAdd == spacingAdd
+          && this.spacingMultiplier == spacingMultiplier
+          && this.hyphenationFrequency == hyphenationFrequency
+          && textSize == paint.getTextSize()
+          && typeface == paint.getTypeface()
+          && letterSpacing == getLetterSpacing(paint)
+          && flags == paint.getFlags()
+          && TextUtils.equals(fontFeatureSettings, getFontFeatureSettings(paint))
+          && isSameText(this.text, text);
+    }
+
+    @SuppressWarnings("ReferenceEquality") // Only immutable strings are compared by content
+    private static boolean isSameText(CharSequence a, CharSequence b) {
+      return a == b || (a instanceof String && b instanceof String && a.equals(b));
+    }
+
+    private static float getLetterSpacing(TextPaint paint) {
+      return VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+    }
+
+    private static String getFontFeatureSettings(TextPaint paint) {
+      return VERSION.SDK_INT >= VERSION_CODES.LOLLIPOP ? paint.getFontFeatureSettings() : null;
+    }
+  }
+}
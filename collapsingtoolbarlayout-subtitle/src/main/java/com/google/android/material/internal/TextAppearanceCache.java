@@ -0,0 +1,103 @@
+package com.google.android.material.internal;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources.Theme;
+import android.util.SparseArray;
+import androidx.annotation.NonNull;
+import androidx.annotation.StyleRes;
+import com.google.android.material.resources.TextAppearance;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A process-wide cache of {@link TextAppearance} resolved from style resources, keyed by theme and
+ * configuration. A text appearance keeps its font once loaded, so parsing the style and loading
+ * the typeface happen once no matter how many layouts use it. Themes are only weakly referenced.
+ *
+ * <p>Themes are mutable, so they are found by identity rather than by their changing hash, and
+ * entries are shared by the contexts of one theme instance, such as views of a single activity.
+ * Entries are also told apart by the theme hash taken when resolving. From API 24 that hash
+ * follows the styles applied to the theme, so {@link Theme#applyStyle(int, boolean)} and {@link
+ * Theme#rebase()} lead to new entries instead of stale ones. Before API 24 it is the identity of
+ * the theme, and styles applied after a text appearance was resolved are not seen.
+ */
+final class TextAppearanceCache {
+  // Theme states and configurations kept per theme, such as both orientations, before the oldest
+  // one is dropped
+  private static final int MAX_ENTRIES = 4;
+
+  private static final List<ThemeEntries> THEMES = new ArrayList<>();
+
+  private TextAppearanceCache() {}
+
+  /** Returns the text appearance of given style, resolving it against the context theme once. */
+  @NonNull
+  static synchronized CachedTextAppearance get(@NonNull Context context, @StyleRes int resId) {
+    final Entry entry = getEntry(context.getTheme(), context.getResources().getConfiguration());
+    CachedTextAppearance textAppearance = entry.textAppearances.get(resId);
+    if (textAppearance == null) {
+      textAppearance = new CachedTextAppearance(context, resId);
+      entry.textAppearances.put(resId, textAppearance);
+    }
+    return textAppearance;
+  }
+
+  @NonNull
+  private static Entry getEntry(@NonNull Theme theme, @NonNull Configuration configuration) {
+    final List<Entry> entries = getThemeEntries(theme).entries;
+    final int themeHash = theme.hashCode();
+    for (int i = 0; i < entries.size(); i++) {
+      final Entry entry = entries.get(i);
+      if (entry.themeHash == themeHash && entry.configuration.diff(configuration) == 0) {
+        return entry;
+      }
+    }
+    if (entries.size() == MAX_ENTRIES) {
+      entries.remove(0);
+    }
+    final Entry entry = new Entry(themeHash, configuration);
+    entries.add(entry);
+    return entry;
+  }
+
+  /** Returns entries of given theme, dropping those of themes no longer referenced. */
+  @NonNull
+  private static ThemeEntries getThemeEntries(@NonNull Theme theme) {
+    ThemeEntries found = null;
+    for (int i = THEMES.size() - 1; i >= 0; i--) {
+      final Theme other = THEMES.get(i).theme.get();
+      if (other == null) {
+        THEMES.remove(i);
+      } else if (other == theme) {
+        found = THEMES.get(i);
+      }
+    }
+    if (found == null) {
+      found = new ThemeEntries(theme);
+      THEMES.add(found);
+    }
+    return found;
+  }
+
+  private static final class ThemeEntries {
+    @NonNull final WeakReference<Theme> theme;
+    @NonNull final List<Entry> entries = new ArrayList<>(1);
+
+    ThemeEntries(@NonNull Theme theme) {
+      this.theme = new WeakReference<>(theme);
+    }
+  }
+
+  private static final class Entry {
+    final int themeHash;
+    @NonNull final Configuration configuration;
+    @NonNull final SparseArray<CachedTextAppearance> textAppearances = new SparseArray<>();
+
+    Entry(int themeHash, @NonNull Configuration configuration) {
+      this.themeHash = themeHash;
+      this.configuration = new Configuration(configuration);
+    }
+  }
+}
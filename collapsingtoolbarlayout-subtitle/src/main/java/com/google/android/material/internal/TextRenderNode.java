@@ -0,0 +1,151 @@
+package com.google.android.material.internal;
+
+import android.graphics.Canvas;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.graphics.Typeface;
+import android.os.Build.VERSION_CODES;
+import android.text.Layout;
+import android.text.TextPaint;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Display list of a text layout. The layout is recorded once and re-recorded only when it or the
+ * paint state it was drawn with changes, while position, scale and alpha are applied as render node
+ * properties so that moving text does not issue new text drawing commands.
+ *
+ * <p>Color, letter spacing and shadow are interpolated on every frame of a transition between
+ * different collapsed and expanded appearances. While they keep changing from one frame to the
+ * next, the layout is drawn directly instead of being recorded on every frame, and recorded again
+ * once they settle.
+ */
+@RequiresApi(VERSION_CODES.Q)
+final class TextRenderNode {
+  @NonNull private final RenderNode node;
+
+  @Nullable private Layout layout;
+  private int flags;
+  private float textSize;
+  @Nullable private Typeface typeface;
+  @NonNull private final Appearance recordedAppearance = new Appearance();
+  @NonNull private final Appearance lastAppearance = new Appearance();
+  private int recordCount;
+
+  TextRenderNode(@NonNull String name) {
+    node = new RenderNode(name);
+    // Text may overflow its layout with shadow or glyph overhang
+    node.setClipToBounds(false);
+    node.setPivotX(0);
+    node.setPivotY(0);
+  }
+
+  /**
+   * Draws the layout at given position and scale, pivoted at its top-left corner, re-recording
+   * only if the layout or paint changed since the last recording. Returns false without drawing
+   * when the paint appearance is still changing, callers then have to draw the layout themselves.
+   */
+  boolean draw(
+      @NonNull Canvas canvas,
+      @NonNull Layout layout,
+      @NonNull TextPaint paint,
+      float x,
+      float y,
+      float scale,
+      float alpha) {
+    // Nothing drawn before counts as settled, so that text at rest is recorded at once
+    final boolean settled = !lastAppearance.isSet() || lastAppearance.matches(paint);
+    lastAppearance.set(paint);
+    if (!node.hasDisplayList() || !isRecorded(layout, paint)) {
+      if (!settled) {
+        return false;
+      }
+      record(layout, paint);
+    }
+    node.setTranslationX(x);
+    node.setTranslationY(y);
+    node.setScaleX(scale);
+    node.setScaleY(scale);
+    node.setAlpha(alpha);
+    canvas.drawRenderNode(node);
+    return true;
+  }
+
+  void discard() {
+    node.discardDisplayList();
+    layout = null;
+    typeface = null;
+    lastAppearance.clear();
+  }
+
+  /** Returns the number of times the layout was recorded. */
+  int getRecordCount() {
+    return recordCount;
+  }
+
+  @SuppressWarnings("ReferenceEquality") // Matches the Typeface comparison in TextView
+  private boolean isRecorded(@NonNull Layout layout, @NonNull TextPaint paint) {
+    return this.layout == layout
+        && flags == paint.getFlags()
+        && textSize == paint.getTextSize()
+        && typeface == paint.getTypeface()
+        && recordedAppearance.matches(paint);
+  }
+
+  private void record(@NonNull Layout layout, @NonNull TextPaint paint) {
+    this.layout = layout;
+    flags = paint.getFlags();
+    textSize = paint.getTextSize();
+    typeface = paint.getTypeface();
+    recordedAppearance.set(paint);
+
+    node.setPosition(0, 0, layout.getWidth(), layout.getHeight());
+    final RecordingCanvas canvas = node.beginRecording();
+    try {
+      layout.draw(canvas);
+    } finally {
+      node.endRecording();
+    }
+    recordCount++;
+  }
+
+  /** Paint values that are interpolated during a transition. */
+  private static final class Appearance {
+    private boolean set;
+    private int color;
+    private float letterSpacing;
+    private float shadowRadius;
+    private float shadowDx;
+    private float shadowDy;
+    private int shadowColor;
+
+    boolean isSet() {
+      return set;
+    }
+
+    boolean matches(@NonNull TextPaint paint) {
+      return set
+          && color == paint.getColor()
+          && letterSpacing == paint.getLetterSpacing()
+          && shadowRadius == paint.getShadowLayerRadius()
+          && shadowDx == paint.getShadowLayerDx()
+          && shadowDy == paint.getShadowLayerDy()
+          && shadowColor == paint.getShadowLayerColor();
+    }
+
+    void set(@NonNull TextPaint paint) {
+      set = true;
+      color = paint.getColor();
+      letterSpacing = paint.getLetterSpacing();
+      shadowRadius = paint.getShadowLayerRadius();
+      shadowDx = paint.getShadowLayerDx();
+      shadowDy = paint.getShadowLayerDy();
+      shadowColor = paint.getShadowLayerColor();
+    }
+
+    void clear() {
+      set = false;
+    }
+  }
+}
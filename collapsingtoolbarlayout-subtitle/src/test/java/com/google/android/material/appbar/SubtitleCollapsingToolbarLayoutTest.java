@@ -3,20 +3,26 @@ package com.google.android.material.appbar;
 import android.animation.TimeInterpolator;
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Build.VERSION_CODES;
+import android.text.TextDirectionHeuristics;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.core.view.GravityCompat;
 import androidx.core.view.WindowInsetsCompat;
+import com.google.android.material.appbar.SubtitleCollapsingToolbarLayout.LayoutParams;
 import com.hanggrian.collapsingtoolbarlayoutsubtitle.ScrimTester;
 import com.hanggrian.collapsingtoolbarlayoutsubtitle.TestActivity;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -24,7 +30,9 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.internal.DoNotInstrument;
+import org.robolectric.shadows.ShadowLooper;
 
+import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -128,6 +136,35 @@ public class SubtitleCollapsingToolbarLayoutTest {
     assertNull(layout.getSubtitle());
   }
 
+  @Test
+  public void precomputedText() {
+    layout.setPrecomputedTitle(
+        PrecomputedTextCompat.create("Title", layout.getTitleTextMetricsParams()));
+    assertEquals("Title", layout.getTitle().toString());
+
+    layout.setPrecomputedSubtitle(
+        PrecomputedTextCompat.create("Subtitle", layout.getSubtitleTextMetricsParams()));
+    assertEquals("Subtitle", layout.getSubtitle().toString());
+  }
+
+  @Test
+  public void precomputedTextDirection() {
+    final String rtlTitle = "\u05e9\u05dc\u05d5\u05dd";
+    assertEquals(
+        TextDirectionHeuristics.LTR, layout.getTitleTextMetricsParams().getTextDirection());
+    assertEquals(
+        TextDirectionHeuristics.LTR,
+        layout.getTitleTextMetricsParams(rtlTitle).getTextDirection());
+
+    layout.setRtlTextDirectionHeuristicsEnabled(true);
+    assertEquals(
+        TextDirectionHeuristics.RTL,
+        layout.getTitleTextMetricsParams(rtlTitle).getTextDirection());
+    assertEquals(
+        TextDirectionHeuristics.RTL,
+        layout.getSubtitleTextMetricsParams(rtlTitle).getTextDirection());
+  }
+
   @Test
   public void titleCollapseMode() {
     assertEquals(CollapsingToolbarLayout.TITLE_COLLAPSE_MODE_SCALE, layout.getTitleCollapseMode());
@@ -153,6 +190,21 @@ public class SubtitleCollapsingToolbarLayoutTest {
     assertEquals(0, layout.getScrimAlpha());
   }
 
+  @Test
+  public void translucentScrimAlpha() {
+    layout.setContentScrimColor(0x80000000);
+    final Drawable scrim = layout.getContentScrim();
+    final Canvas canvas = new Canvas(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+    layout.setScrimAlpha(255);
+    layout.draw(canvas);
+    assertEquals(128, scrim.getAlpha());
+
+    // Color alpha is modulated by scrim alpha, it may already read as the new scrim alpha
+    layout.setScrimAlpha(128);
+    layout.draw(canvas);
+    assertEquals(64, scrim.getAlpha());
+  }
+
   @Test
   public void visibility() {
     layout.setVisibility(View.VISIBLE);
@@ -269,6 +321,26 @@ public class SubtitleCollapsingToolbarLayoutTest {
     assertTrue(layout.isSubtitleExtraMultilineHeightEnabled());
   }
 
+  @Test
+  public void measureOnceWhenExact() {
+    final int[] measures = new int[1];
+    layout.addView(
+        new View(activity) {
+          @Override
+          protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            measures[0]++;
+          }
+        });
+    layout.setTitleExtraMultilineHeightEnabled(true);
+    layout.setTitleMaxLines(3);
+    layout.measure(
+        View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+    assertEquals(1, measures[0]);
+    assertEquals(100, layout.getMeasuredHeight());
+  }
+
   @Test
   public void positionInterpolator() {
     assertNull(layout.getTitlePositionInterpolator());
@@ -276,4 +348,213 @@ public class SubtitleCollapsingToolbarLayoutTest {
     layout.setTitlePositionInterpolator(interpolator);
     assertEquals(interpolator, layout.getTitlePositionInterpolator());
   }
+
+  @Test
+  public void textureCachingEnabled() {
+    assertFalse(layout.isTextureCachingEnabled());
+    layout.setTextureCachingEnabled(true);
+    assertTrue(layout.isTextureCachingEnabled());
+  }
+
+  @Test
+  public void textRenderNodeEnabled() {
+    assertFalse(layout.isTextRenderNodeEnabled());
+    layout.setTextRenderNodeEnabled(true);
+    assertTrue(layout.isTextRenderNodeEnabled());
+
+    // Render nodes are only drawn into hardware canvases of API 29+
+    layout.setTitle("Title");
+    layout.setSubtitle("Subtitle");
+    layout.measure(
+        View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.EXACTLY));
+    layout.layout(0, 0, 400, 200);
+    layout.collapsingTextHelper.setMetricsEnabled(true);
+    layout.draw(new Canvas(Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888)));
+    assertEquals(0, layout.collapsingTextHelper.getRenderNodeRecordCount());
+  }
+
+  @Test
+  public void scrimRenderNodeEnabled() {
+    assertFalse(layout.isScrimRenderNodeEnabled());
+    layout.setScrimRenderNodeEnabled(true);
+    assertTrue(layout.isScrimRenderNodeEnabled());
+    layout.setContentScrimColor(Color.RED);
+    layout.setScrimsShown(true, false);
+    layout.draw(new Canvas(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888)));
+    assertEquals(255, layout.getScrimAlpha());
+  }
+
+  @Test
+  public void scrimScrollLinkedEnabled() {
+    assertFalse(layout.isScrimScrollLinkedEnabled());
+    layout.setScrimScrollLinkedEnabled(true);
+    assertTrue(layout.isScrimScrollLinkedEnabled());
+    layout.setContentScrimColor(Color.RED);
+    layout.layout(0, 0, 100, 300);
+    assertEquals(0, layout.getScrimAlpha());
+
+    layout.currentOffset = -250;
+    layout.updateScrimVisibility();
+    assertEquals(128, layout.getScrimAlpha());
+    layout.currentOffset = -300;
+    layout.updateScrimVisibility();
+    assertEquals(255, layout.getScrimAlpha());
+
+    layout.setScrimScrollLinkedEnabled(false);
+    assertEquals(255, layout.getScrimAlpha());
+  }
+
+  @Test
+  public void scrimScrollLinkedIgnoresAnimation() {
+    layout.setScrimScrollLinkedEnabled(true);
+    layout.setContentScrimColor(Color.RED);
+    layout.layout(0, 0, 100, 300);
+    layout.setScrimsShown(true, true);
+    assertEquals(255, layout.getScrimAlpha());
+
+    // A running animator would overwrite this on its next frame
+    layout.currentOffset = -250;
+    layout.updateScrimVisibility();
+    ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+    assertEquals(128, layout.getScrimAlpha());
+  }
+
+  @Test
+  public void collapseModes() {
+    final View offChild = new View(activity);
+    final View pinChild = new View(activity);
+    final View parallaxChild = new View(activity);
+    final LayoutParams pinLp = new LayoutParams(MATCH_PARENT, 100);
+    pinLp.setCollapseMode(LayoutParams.COLLAPSE_MODE_PIN);
+    final LayoutParams parallaxLp = new LayoutParams(MATCH_PARENT, 100);
+    parallaxLp.setCollapseMode(LayoutParams.COLLAPSE_MODE_PARALLAX);
+    parallaxLp.setParallaxMultiplier(0.3f);
+    layout.addView(offChild, new LayoutParams(MATCH_PARENT, 100));
+    layout.addView(pinChild, pinLp);
+    layout.addView(parallaxChild, parallaxLp);
+    final AppBarLayout appBarLayout = layoutInAppBarLayout();
+
+    // Offsets of CollapsingToolbarLayout: pinned up to the bottom, parallax scaled by multiplier
+    appBarLayout.onOffsetChanged(-100);
+    assertEquals(0, offChild.getTop());
+    assertEquals(100, pinChild.getTop());
+    assertEquals(30, parallaxChild.getTop());
+    appBarLayout.onOffsetChanged(-250);
+    assertEquals(0, offChild.getTop());
+    assertEquals(200, pinChild.getTop());
+    assertEquals(75, parallaxChild.getTop());
+  }
+
+  @Test
+  public void collapseModeChangedAfterLayout() {
+    final View child = new View(activity);
+    layout.addView(child, new LayoutParams(MATCH_PARENT, 100));
+    final AppBarLayout appBarLayout = layoutInAppBarLayout();
+
+    final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+    lp.setCollapseMode(LayoutParams.COLLAPSE_MODE_PARALLAX);
+    lp.setParallaxMultiplier(0.5f);
+    appBarLayout.onOffsetChanged(-100);
+    assertEquals(50, child.getTop());
+
+    lp.setParallaxMultiplier(0.2f);
+    appBarLayout.onOffsetChanged(-100);
+    assertEquals(20, child.getTop());
+
+    lp.setCollapseMode(LayoutParams.COLLAPSE_MODE_OFF);
+    appBarLayout.onOffsetChanged(-200);
+    assertEquals(20, child.getTop());
+  }
+
+  @Test
+  public void interpolationTablesEnabled() {
+    assertFalse(layout.isInterpolationTablesEnabled());
+    final TimeInterpolator interpolator = input -> 0;
+    layout.setTitlePositionInterpolator(interpolator);
+    layout.setInterpolationTablesEnabled(true);
+    assertTrue(layout.isInterpolationTablesEnabled());
+    assertEquals(interpolator, layout.getTitlePositionInterpolator());
+  }
+
+  @Test
+  public void warmUp() {
+    SubtitleCollapsingToolbarLayout.warmUp(activity);
+    SubtitleCollapsingToolbarLayout.warmUp(
+        activity,
+        androidx.appcompat.R.style.TextAppearance_AppCompat_Large,
+        androidx.appcompat.R.style.TextAppearance_AppCompat_Small);
+    final SubtitleCollapsingToolbarLayout warmLayout =
+        new SubtitleCollapsingToolbarLayout(activity);
+    assertEquals(
+        layout.collapsingTextHelper.getExpandedTextSize(),
+        warmLayout.collapsingTextHelper.getExpandedTextSize(),
+        0);
+    assertEquals(
+        layout.collapsingTextHelper.getCollapsedTextSize2(),
+        warmLayout.collapsingTextHelper.getCollapsedTextSize2(),
+        0);
+  }
+
+  @Test
+  public void batchEdit() {
+    assertFalse(layout.isInBatchEdit());
+    layout.beginBatchEdit();
+    assertTrue(layout.isInBatchEdit());
+    layout.setTitle("Title");
+    layout.setSubtitle("Subtitle");
+    layout.setExpandedTitleTextColor(Color.RED);
+    layout.endBatchEdit();
+    assertFalse(layout.isInBatchEdit());
+    assertEquals("Title", layout.getTitle());
+    assertEquals("Subtitle", layout.getSubtitle());
+  }
+
+  @Test
+  public void onFrameMetricsListener() {
+    final int[] frames = new int[1];
+    final int[] staticLayoutCounts = new int[2];
+    layout.setOnFrameMetricsListener(
+        (source, metrics) -> {
+          assertEquals(layout, source);
+          assertTrue(metrics.getOffsetChangedNanos() >= 0);
+          assertTrue(metrics.getCalculateOffsetsNanos() >= 0);
+          assertTrue(metrics.getCalculateBaseOffsetsNanos() >= 0);
+          assertTrue(metrics.getStaticLayoutNanos() >= 0);
+          assertTrue(metrics.getDrawTextNanos() >= 0);
+          assertTrue(metrics.getDrawScrimNanos() >= 0);
+          assertEquals(-1, metrics.getAllocationCount());
+          staticLayoutCounts[frames[0]++] = metrics.getStaticLayoutCount();
+        });
+    layout.setTitle("Title");
+    layout.setSubtitle("Subtitle");
+    layout.measure(
+        View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.EXACTLY));
+    layout.layout(0, 0, 400, 200);
+    final Canvas canvas = new Canvas(Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888));
+    layout.draw(canvas);
+    layout.draw(canvas);
+    assertEquals(2, frames[0]);
+    // Text laid out before the first frame is attributed to it, the second frame reuses it
+    assertTrue(staticLayoutCounts[0] > 0);
+    assertEquals(0, staticLayoutCounts[1]);
+
+    layout.setOnFrameMetricsListener(null);
+    layout.draw(canvas);
+    assertEquals(2, frames[0]);
+  }
+
+  /** Lays out the layout at 100x300 inside an attached app bar, which dispatches its offsets. */
+  @NonNull
+  private AppBarLayout layoutInAppBarLayout() {
+    final AppBarLayout appBarLayout = new AppBarLayout(activity);
+    appBarLayout.addView(layout, MATCH_PARENT, 300);
+    activity.setContentView(appBarLayout);
+    appBarLayout.measure(
+        View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY));
+    appBarLayout.layout(0, 0, 100, 300);
+    return appBarLayout;
+  }
 }
@@ -1,16 +1,24 @@
 package com.google.android.material.internal;
 
 import android.animation.TimeInterpolator;
+import android.content.Context;
 import android.content.res.AssetManager;
 import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PointF;
 import android.graphics.Typeface;
 import android.os.Build.VERSION_CODES;
 import android.view.Gravity;
 import android.view.View;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import com.hanggrian.collapsingtoolbarlayoutsubtitle.TestActivity;
 import com.hanggrian.collapsingtoolbarlayoutsubtitle.test.R;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,6 +56,29 @@ public class CollapsingTextHelper2Test {
     assertEquals(interpolator, helper.getPositionInterpolator());
   }
 
+  @Test
+  public void interpolationTablesEnabled() {
+    helper = createLaidOutHelper(new View(activity));
+    // Same curve as AccelerateDecelerateInterpolator
+    helper.setPositionInterpolator(input -> (float) (Math.cos((input + 1) * Math.PI) / 2 + 0.5));
+    helper.setText("Title");
+    final PointF[] origins = new PointF[11];
+    for (int i = 0; i < origins.length; i++) {
+      helper.setExpansionFraction(i / 10f);
+      origins[i] = draw().origin;
+    }
+
+    assertFalse(helper.isInterpolationTablesEnabled());
+    helper.setInterpolationTablesEnabled(true);
+    assertTrue(helper.isInterpolationTablesEnabled());
+    for (int i = 0; i < origins.length; i++) {
+      helper.setExpansionFraction(i / 10f);
+      final PointF origin = draw().origin;
+      assertEquals(origins[i].x, origin.x, 0.1f);
+      assertEquals(origins[i].y, origin.y, 0.1f);
+    }
+  }
+
   @Test
   public void textSize() {
     assertEquals(15f, helper.getExpandedTextSize(), 0);
@@ -186,6 +217,48 @@ public class CollapsingTextHelper2Test {
     assertEquals(0.5f, helper.getExpansionFraction(), 0);
   }
 
+  @Test
+  public void expansionFractionKeepsLayouts() {
+    final View view = new View(activity);
+    view.layout(0, 0, 100, 50);
+    helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(0, 0, 100, 10);
+    helper.setExpandedBounds(0, 10, 100, 50);
+    helper.setCollapsedTextSize(4f);
+    helper.setCollapsedTextSize2(2f);
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    // First round trip builds the layouts of both ends
+    sweepExpansionFraction();
+
+    helper.setMetricsEnabled(true);
+    sweepExpansionFraction();
+    sweepExpansionFraction();
+    assertEquals(0, helper.getStaticLayoutCount());
+  }
+
+  @Test
+  public void textLayoutCacheInvalidated() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setText("Title");
+    helper.setMetricsEnabled(true);
+    helper.recalculate();
+    assertEquals(0, helper.getStaticLayoutCount());
+
+    helper.setText("Another title");
+    assertTrue(helper.getStaticLayoutCount() > 0);
+    helper.resetMetrics();
+    helper.setExpandedTextSize(30f);
+    assertTrue(helper.getStaticLayoutCount() > 0);
+    helper.resetMetrics();
+    helper.setTypefaces(Typeface.DEFAULT_BOLD);
+    assertTrue(helper.getStaticLayoutCount() > 0);
+    helper.resetMetrics();
+    helper.setExpandedBounds(0, 0, 800, 500);
+    helper.recalculateIfNeeded();
+    assertTrue(helper.getStaticLayoutCount() > 0);
+  }
+
   @Test
   public void isStateful() {
     assertFalse(helper.isStateful());
@@ -237,4 +310,267 @@ public class CollapsingTextHelper2Test {
     helper.setMaxLines2(3);
     assertEquals(3, helper.getMaxLines2());
   }
+
+  @Test
+  public void expandedLineCount() {
+    assertEquals(0, helper.calculateExpandedLineCount(100));
+    assertEquals(0, helper.calculateExpandedLineCount2(100));
+
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    assertEquals(1, helper.calculateExpandedLineCount(1000));
+    assertEquals(1, helper.calculateExpandedLineCount2(1000));
+    assertEquals(0, helper.calculateExpandedLineCount(0));
+  }
+
+  @Test
+  public void unchangedShadowLayer() {
+    final InvalidationCountingView view = new InvalidationCountingView(activity);
+    helper = createLaidOutHelper(view);
+    helper.setCollapsedBounds(0, 0, 1000, 500);
+    helper.setCollapsedTextAppearance(R.style.TextAppearance_Shadow);
+    helper.setExpandedTextAppearance(R.style.TextAppearance_Shadow);
+    helper.setText("Title");
+    view.invalidationCount = 0;
+
+    // Nothing moves or blends at a fraction this small, only the same shadow is applied again
+    helper.setExpansionFraction(1e-9f);
+    assertEquals(0, view.invalidationCount);
+  }
+
+  @Test
+  public void invalidationPerFrame() {
+    final InvalidationCountingView view = new InvalidationCountingView(activity);
+    helper = createLaidOutHelper(view);
+    helper.setCollapsedTextSize(10f);
+    helper.setCollapsedTextSize2(8f);
+    helper.setExpandedTextSize(30f);
+    helper.setExpandedTextSize2(20f);
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    view.invalidationCount = 0;
+
+    // Title and subtitle both move, yet a frame is invalidated once
+    helper.setExpansionFraction(0.5f);
+    assertEquals(1, view.invalidationCount);
+    helper.setExpansionFraction(0.6f);
+    assertEquals(2, view.invalidationCount);
+  }
+
+  @Test
+  public void batchEdit() {
+    helper = createLaidOutHelper(new View(activity));
+
+    assertFalse(helper.isInBatchEdit());
+    helper.beginBatchEdit();
+    helper.beginBatchEdit();
+    assertTrue(helper.isInBatchEdit());
+    helper.setText("Title");
+    helper.setText2("Subtitle");
+    helper.setExpandedTextSize(30f);
+    helper.endBatchEdit();
+    assertEquals(0, helper.getLineCount());
+    assertEquals(0, helper.getLineCount2());
+
+    helper.endBatchEdit();
+    assertFalse(helper.isInBatchEdit());
+    assertEquals(1, helper.getLineCount());
+    assertEquals(1, helper.getLineCount2());
+  }
+
+  @Test
+  public void batchEditDefersOffsets() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setText("Title");
+    helper.setMetricsEnabled(true);
+
+    helper.beginBatchEdit();
+    helper.setExpandedTextSize(60f);
+    helper.setExpansionFraction(0.5f);
+    // Nothing is laid out with the size before the edit
+    assertEquals(0, helper.getStaticLayoutCount());
+    assertEquals(0.5f, helper.getExpansionFraction(), 0);
+
+    helper.endBatchEdit();
+    assertTrue(helper.getStaticLayoutCount() > 0);
+    assertEquals(0.5f, helper.getExpansionFraction(), 0);
+  }
+
+  @Test
+  public void recalculateIfNeeded() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setText("Title");
+    helper.recalculate();
+    helper.setMetricsEnabled(true);
+
+    // Setting unchanged values dirties nothing
+    helper.setText("Title");
+    helper.setExpandedTextSize(helper.getExpandedTextSize());
+    helper.setFadeModeStartFraction(0);
+    helper.recalculateIfNeeded();
+    assertEquals(0, helper.getCalculateBaseOffsetsNanos());
+    assertEquals(0, helper.getStaticLayoutCount());
+
+    helper.setFadeModeStartFraction(0.5f);
+    helper.recalculateIfNeeded();
+    assertTrue(helper.getCalculateBaseOffsetsNanos() > 0);
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void recalculateForced() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setText("Title");
+    helper.recalculate();
+    helper.setMetricsEnabled(true);
+
+    helper.recalculate(false);
+    assertEquals(0, helper.getCalculateBaseOffsetsNanos());
+    helper.recalculate(true);
+    assertTrue(helper.getCalculateBaseOffsetsNanos() > 0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void batchEditUnbalanced() {
+    helper.endBatchEdit();
+  }
+
+  @Test
+  public void textChangedAfterLayout() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setExpandedTextSize2(60f);
+    helper.setMaxLines2(3);
+    helper.setText("Title");
+    helper.setText2("1");
+    final float titleWidth = helper.calculateCollapsedTextWidth();
+    final float subtitleWidth = helper.calculateCollapsedTextWidth2();
+
+    helper.setText2("100");
+    assertEquals(titleWidth, helper.calculateCollapsedTextWidth(), 0);
+    assertTrue(helper.calculateCollapsedTextWidth2() > subtitleWidth);
+    assertEquals(1, helper.getLineCount2());
+
+    helper.setText2("100 100 100 100 100 100 100 100 100 100 100 100 100 100 100 100 100 100");
+    assertTrue(helper.getLineCount2() > 1);
+  }
+
+  @Test
+  public void tabularNumbers() {
+    helper = createLaidOutHelper(new View(activity));
+    assertFalse(helper.isTabularNumbersEnabled2());
+    helper.setTabularNumbersEnabled2(true);
+    assertTrue(helper.isTabularNumbersEnabled2());
+    helper.setText2("12:00");
+    helper.setMetricsEnabled(true);
+
+    helper.setText2("12:01");
+    assertEquals("12:01", helper.getText2());
+    assertEquals(0, helper.getStaticLayoutCount());
+
+    helper.setText2("12:0a");
+    assertTrue(helper.getStaticLayoutCount() > 0);
+  }
+
+  @Test
+  public void tabularNumbersAfterOtherText() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setMaxLines2(2);
+    helper.setTabularNumbersEnabled2(true);
+    helper.setText2("12:00");
+    helper.setText2("12:0a");
+    helper.setExpansionFraction(0.5f);
+    assertTrue(drawText2().contains("12:0a"));
+
+    // Back to a text equal to the first one, whose layout must not be reused for patching
+    helper.setText2("12:00");
+    helper.setText2("12:01");
+    final List<String> drawnText = drawText2();
+    assertTrue(drawnText.contains("12:01"));
+    assertFalse(drawnText.contains("12:00"));
+  }
+
+  @Test
+  public void tabularNumbersWhileCollapsing() {
+    helper = createLaidOutHelper(new View(activity));
+    helper.setCollapsedTextSize2(20f);
+    helper.setExpandedTextSize2(60f);
+    helper.setMaxLines2(2);
+    helper.setTabularNumbersEnabled2(true);
+    helper.setText2("12:00");
+    helper.setExpansionFraction(0.5f);
+
+    // Collapsed copy drawn in the transition is patched with the collapsed paint, not the current
+    helper.setText2("12:01");
+    final List<String> drawnText = drawText2();
+    assertTrue(drawnText.contains("12:01"));
+    assertFalse(drawnText.contains("12:00"));
+  }
+
+  /** Returns a helper of given view laid out, whose text is calculated as soon as it changes. */
+  private static CollapsingTextHelper2 createLaidOutHelper(@NonNull View view) {
+    view.layout(0, 0, 1000, 500);
+    final CollapsingTextHelper2 helper = new CollapsingTextHelper2(view);
+    helper.setCollapsedBounds(0, 0, 1000, 100);
+    helper.setExpandedBounds(0, 0, 1000, 500);
+    return helper;
+  }
+
+  /** Draws the title into a canvas keeping its draw calls. */
+  private DrawCallCanvas draw() {
+    final DrawCallCanvas canvas = new DrawCallCanvas();
+    helper.draw(canvas);
+    return canvas;
+  }
+
+  /** Draws the subtitle, returning the text of every draw call. */
+  private List<String> drawText2() {
+    final DrawCallCanvas canvas = new DrawCallCanvas();
+    helper.draw2(canvas);
+    return canvas.texts;
+  }
+
+  private void sweepExpansionFraction() {
+    for (int i = 0; i <= 10; i++) {
+      helper.setExpansionFraction(i / 10f);
+    }
+    for (int i = 10; i >= 0; i--) {
+      helper.setExpansionFraction(i / 10f);
+    }
+  }
+
+  /** View counting invalidations posted on animation. */
+  private static class InvalidationCountingView extends View {
+    int invalidationCount;
+
+    InvalidationCountingView(@NonNull Context context) {
+      super(context);
+    }
+
+    @Override
+    public void postInvalidateOnAnimation() {
+      invalidationCount++;
+    }
+  }
+
+  /** Canvas keeping text drawn into it and where it was last translated to. */
+  private static class DrawCallCanvas extends Canvas {
+    final List<String> texts = new ArrayList<>();
+    final PointF origin = new PointF();
+
+    DrawCallCanvas() {
+      super(Bitmap.createBitmap(1000, 500, Bitmap.Config.ARGB_8888));
+    }
+
+    @Override
+    public void drawText(
+        @NonNull CharSequence text, int start, int end, float x, float y, @NonNull Paint paint) {
+      texts.add(text.subSequence(start, end).toString());
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+      origin.set(dx, dy);
+      super.translate(dx, dy);
+    }
+  }
 }
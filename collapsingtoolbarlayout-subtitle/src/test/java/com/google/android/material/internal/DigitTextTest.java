@@ -0,0 +1,40 @@
+package com.google.android.material.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DigitText}.
+ */
+public class DigitTextTest {
+  private static final float[] TABULAR = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+  private static final float[] PROPORTIONAL = {1, 0.5f, 1, 1, 1, 1, 1, 1, 1, 1};
+
+  @Test
+  public void canReplaceDigits() {
+    final DigitText text = new DigitText("$1,000.00");
+    assertTrue(text.canReplaceDigits("$1,024.99", TABULAR));
+    assertFalse(text.canReplaceDigits("$1.000,00", TABULAR));
+    assertFalse(text.canReplaceDigits("$10,000.00", TABULAR));
+    assertFalse(text.canReplaceDigits("$1,000.01", TABULAR, PROPORTIONAL));
+    assertTrue(text.canReplaceDigits("$1,000.02", TABULAR, PROPORTIONAL));
+  }
+
+  @Test
+  public void replaceDigits() {
+    final DigitText text = new DigitText("12:00");
+    assertEquals("12:00", text.toString());
+    text.replaceDigits("12:01");
+    assertEquals("12:01", text.toString());
+    assertEquals('1', text.charAt(4));
+    assertEquals("01", text.subSequence(3, 5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void replaceDigitsLength() {
+    new DigitText("9").replaceDigits("10");
+  }
+}
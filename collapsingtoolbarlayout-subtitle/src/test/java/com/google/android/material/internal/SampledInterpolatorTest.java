@@ -0,0 +1,43 @@
+package com.google.android.material.internal;
+
+import android.animation.TimeInterpolator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link SampledInterpolator}.
+ */
+public class SampledInterpolatorTest {
+  @Test
+  public void linear() {
+    final SampledInterpolator interpolator = new SampledInterpolator(input -> input, 3);
+    assertEquals(0f, interpolator.getInterpolation(0f), 0);
+    assertEquals(0.25f, interpolator.getInterpolation(0.25f), 0.00001f);
+    assertEquals(0.5f, interpolator.getInterpolation(0.5f), 0);
+    assertEquals(1f, interpolator.getInterpolation(1f), 0);
+  }
+
+  @Test
+  public void outOfRange() {
+    final SampledInterpolator interpolator = new SampledInterpolator(input -> input * input);
+    assertEquals(0f, interpolator.getInterpolation(-1f), 0);
+    assertEquals(1f, interpolator.getInterpolation(2f), 0);
+  }
+
+  @Test
+  public void curve() {
+    // Same curve as AccelerateDecelerateInterpolator
+    final TimeInterpolator source = input -> (float) (Math.cos((input + 1) * Math.PI) / 2 + 0.5);
+    final SampledInterpolator interpolator = new SampledInterpolator(source);
+    for (int i = 0; i <= 1000; i++) {
+      final float input = i / 1000f;
+      assertEquals(source.getInterpolation(input), interpolator.getInterpolation(input), 0.0001f);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sampleCount() {
+    new SampledInterpolator(input -> input, 1);
+  }
+}
@@ -0,0 +1,98 @@
+package com.google.android.material.internal;
+
+import android.graphics.Typeface;
+import android.os.Build.VERSION_CODES;
+import android.text.Layout.Alignment;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.style.StyleSpan;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link StaticLayoutCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = VERSION_CODES.LOLLIPOP)
+@DoNotInstrument
+public class StaticLayoutCacheTest {
+  private StaticLayoutCache cache;
+  private TextPaint paint;
+
+  @Before
+  public void setup() {
+    cache = new StaticLayoutCache(2);
+    paint = new TextPaint();
+    paint.setTextSize(10f);
+  }
+
+  @Test
+  public void hit() {
+    final StaticLayout layout = put("Title", 100);
+    assertSame(layout, get(new String("Title"), 100));
+  }
+
+  @Test
+  public void mutableTextByIdentity() {
+    final StringBuilder text = new StringBuilder("Title");
+    final StaticLayout layout = put(text, 100);
+    assertSame(layout, get(text, 100));
+    assertNull(get(new StringBuilder("Title"), 100));
+
+    final SpannableString spanned = new SpannableString("Title");
+    spanned.setSpan(new StyleSpan(Typeface.BOLD), 0, 5, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+    put("Title", 100);
+    assertNull(get(spanned, 100));
+  }
+
+  @Test
+  public void miss() {
+    put("Title", 100);
+    assertNull(get("Subtitle", 100));
+    assertNull(get("Title", 200));
+
+    paint.setTextSize(20f);
+    assertNull(get("Title", 100));
+    paint.setTextSize(10f);
+    paint.setTypeface(Typeface.DEFAULT_BOLD);
+    assertNull(get("Title", 100));
+    paint.setTypeface(null);
+    paint.setUnderlineText(true);
+    assertNull(get("Title", 100));
+    paint.setUnderlineText(false);
+    paint.setFontFeatureSettings("tnum");
+    assertNull(get("Title", 100));
+  }
+
+  @Test
+  public void eviction() {
+    final StaticLayout first = put("First", 100);
+    put("Second", 100);
+    // Touching the first entry makes the second one least recently used
+    assertSame(first, get("First", 100));
+    final StaticLayout third = put("Third", 100);
+    assertSame(first, get("First", 100));
+    assertSame(third, get("Third", 100));
+    assertNull(get("Second", 100));
+  }
+
+  private StaticLayout put(CharSequence text, int width) {
+    final StaticLayout layout =
+        new StaticLayout(text, paint, width, Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    cache.put(layout, text, paint, width, 1, Alignment.ALIGN_NORMAL, false, 0f, 1f, 0);
+    return layout;
+  }
+
+  private StaticLayout get(CharSequence text, int width) {
+    return cache.get(text, paint, width, 1, Alignment.ALIGN_NORMAL, false, 0f, 1f, 0);
+  }
+}
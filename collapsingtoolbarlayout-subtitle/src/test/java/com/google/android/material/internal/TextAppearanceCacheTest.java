@@ -0,0 +1,147 @@
+package com.google.android.material.internal;
+
+import android.content.res.Configuration;
+import android.graphics.Typeface;
+import android.os.Build.VERSION_CODES;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import com.google.android.material.appbar.SubtitleCollapsingToolbarLayout;
+import com.google.android.material.resources.TextAppearance;
+import com.google.android.material.resources.TextAppearanceFontCallback;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.TestActivity;
+import com.hanggrian.collapsingtoolbarlayoutsubtitle.test.R;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TextAppearanceCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = VERSION_CODES.LOLLIPOP)
+@DoNotInstrument
+public class TextAppearanceCacheTest {
+  private AppCompatActivity activity;
+
+  @Before
+  public void setup() {
+    activity = Robolectric.buildActivity(TestActivity.class).setup().get();
+  }
+
+  @Test
+  public void hit() {
+    final CachedTextAppearance textAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    assertSame(
+        textAppearance, TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text));
+    assertEquals(
+        new TextAppearance(activity, R.style.TextAppearance_Collapsed_Text).getTextSize(),
+        textAppearance.getTextSize(),
+        0);
+  }
+
+  @Test
+  public void miss() {
+    final CachedTextAppearance textAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    assertNotSame(
+        textAppearance, TextAppearanceCache.get(activity, R.style.TextAppearance_Expanded_Text));
+
+    // Another activity has another theme instance
+    final AppCompatActivity otherActivity =
+        Robolectric.buildActivity(TestActivity.class).setup().get();
+    assertNotSame(
+        textAppearance,
+        TextAppearanceCache.get(otherActivity, R.style.TextAppearance_Collapsed_Text));
+  }
+
+  @Test
+  @Config(sdk = VERSION_CODES.N)
+  public void themeChange() {
+    final CachedTextAppearance textAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    activity.getTheme().applyStyle(R.style.Theme_Margin, true);
+    final CachedTextAppearance appliedTextAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    assertNotSame(textAppearance, appliedTextAppearance);
+    assertSame(
+        appliedTextAppearance,
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text));
+  }
+
+  @Test
+  public void configurationChange() {
+    final CachedTextAppearance textAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    final Configuration configuration =
+        new Configuration(activity.getResources().getConfiguration());
+    configuration.fontScale *= 2;
+    updateConfiguration(configuration);
+    assertNotSame(
+        textAppearance, TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text));
+  }
+
+  @Test
+  public void configurations() {
+    final Configuration configuration =
+        new Configuration(activity.getResources().getConfiguration());
+    final CachedTextAppearance textAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+    final Configuration largeConfiguration = new Configuration(configuration);
+    largeConfiguration.fontScale *= 2;
+    updateConfiguration(largeConfiguration);
+    final CachedTextAppearance largeTextAppearance =
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text);
+
+    // Switching back and forth does not drop the other configuration
+    updateConfiguration(configuration);
+    assertSame(
+        textAppearance, TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text));
+    updateConfiguration(largeConfiguration);
+    assertSame(
+        largeTextAppearance,
+        TextAppearanceCache.get(activity, R.style.TextAppearance_Collapsed_Text));
+  }
+
+  @Test
+  public void warmUp() {
+    final int resId = androidx.appcompat.R.style.TextAppearance_AppCompat_Widget_ActionBar_Title;
+    SubtitleCollapsingToolbarLayout.warmUp(activity);
+    final CachedTextAppearance textAppearance = TextAppearanceCache.get(activity, resId);
+
+    // Warmed font is served at once, without waiting for another retrieval
+    final boolean[] fontResolvedSynchronously = new boolean[1];
+    textAppearance.getFontAsync(
+        activity,
+        new TextAppearanceFontCallback() {
+          @Override
+          public void onFontRetrieved(Typeface typeface, boolean resolvedSynchronously) {
+            fontResolvedSynchronously[0] = resolvedSynchronously;
+          }
+
+          @Override
+          public void onFontRetrievalFailed(int reason) {}
+        });
+    assertTrue(fontResolvedSynchronously[0]);
+
+    // Default text appearance ids of layouts are the warmed ones
+    new SubtitleCollapsingToolbarLayout(activity);
+    new SubtitleCollapsingToolbarLayout(activity);
+    assertSame(textAppearance, TextAppearanceCache.get(activity, resId));
+  }
+
+  private void updateConfiguration(@NonNull Configuration configuration) {
+    activity
+        .getResources()
+        .updateConfiguration(configuration, activity.getResources().getDisplayMetrics());
+  }
+}
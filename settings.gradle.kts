@@ -13,5 +13,6 @@ dependencyResolutionManagement.repositories {
 rootProject.name = "collapsingtoolbarlayout-subtitle"
 
 include("collapsingtoolbarlayout-subtitle")
+include("benchmark")
 include("sample")
 include("website")